@@ -9,7 +9,7 @@ import org.apache.log4j.Logger;
 
 /**
  * AdminServlet handles the resource /admin. It allows logged in admin users to
- * add a new seed or shutdown the server.
+ * add a new seed, save the index or shutdown the server.
  * 
  * @author Steely Morneau
  * 
@@ -77,6 +77,8 @@ public class AdminServlet extends BaseServlet {
 					out.println("<h4>Administrator Settings</h4>");
 					out.println("");
 					printForm(out);
+					printCacheStatistics(out);
+					printSearchStatistics(out);
 					String error = request.getParameter("error");
 
 					/*
@@ -102,8 +104,8 @@ public class AdminServlet extends BaseServlet {
 	}
 
 	/**
-	 * Processes the admin settings forms, adding a new seed or shutting down
-	 * the server.
+	 * Processes the admin settings forms, adding a new seed, saving the index
+	 * or shutting down the server.
 	 */
 	public void doPost(HttpServletRequest request, HttpServletResponse response) {
 
@@ -120,6 +122,7 @@ public class AdminServlet extends BaseServlet {
 			// get new seed and shutdown command from form
 			String newSeed = request.getParameter("seed");
 			String shutdown = request.getParameter("shutdown");
+			String save = request.getParameter("save");
 
 			Status status = Status.OK;
 
@@ -153,6 +156,24 @@ public class AdminServlet extends BaseServlet {
 					}
 				}
 
+			} else if (save != null && !save.equals("")) {
+				// save the index to its file
+
+				try {
+					InvertedIndex.getInstance().save();
+					status = Status.INDEX_SAVED;
+				} catch (IOException e) {
+					log.error("Unable to save the index.", e);
+					status = Status.INDEX_NOT_SAVED;
+				}
+
+				try {
+					response.sendRedirect(response
+							.encodeRedirectURL("/admin?error=" + status.name()));
+				} catch (IOException e) {
+					log.debug("Cannot redirect to /admin.");
+				}
+
 			} else if (shutdown != null && !shutdown.equals("")) {
 				// shutdown server
 
@@ -195,8 +216,50 @@ public class AdminServlet extends BaseServlet {
 		out.println("</form><br>");
 		out.println("<center class=\"green\">OR<br></center>");
 		out.println("<form action=\"/admin\" method=\"post\">");
+		out.println("<p><input type=\"submit\" name=\"save\" value=\"Save index\"></p>");
+		out.println("</form>");
+		out.println("<center class=\"green\">OR<br></center>");
+		out.println("<form action=\"/admin\" method=\"post\">");
 		out.println("<p><input type=\"submit\" name=\"shutdown\" value=\"Shutdown\"></p>");
 		out.println("</form>");
 	}
 
+	/**
+	 * Prints the hit and miss counts of the {@link QueryCache}.
+	 * 
+	 * @param out
+	 *            PrintWriter from HTTP response
+	 */
+	private void printCacheStatistics(PrintWriter out) {
+		QueryCache cache = QueryCache.getInstance();
+		long hits = cache.getHits();
+		long lookups = hits + cache.getMisses();
+
+		out.println("<h4>Query cache</h4>");
+		out.println("<p>" + cache.size() + " result pages cached, " + hits
+				+ " hits and " + cache.getMisses() + " misses ("
+				+ (lookups == 0 ? 0 : 100 * hits / lookups) + "% hit rate), "
+				+ cache.getEvictions() + " evictions.</p>");
+	}
+
+	/**
+	 * Prints the time spent in each phase of searching, as kept by
+	 * {@link SearchStatistics}.
+	 * 
+	 * @param out
+	 *            PrintWriter from HTTP response
+	 */
+	private void printSearchStatistics(PrintWriter out) {
+		SearchStatistics statistics = SearchStatistics.getInstance();
+
+		out.println("<h4>Search phases</h4>");
+		out.println(String.format("<p>%d searches. Selecting candidates took "
+				+ "%.2f ms on average (%.2f ms at most); reranking %.1f "
+				+ "candidates took %.2f ms on average (%.2f ms at most).</p>",
+				statistics.getSearches(), statistics.getAverageSelectTime(),
+				statistics.getMaxSelectTime(), statistics.getAverageReranked(),
+				statistics.getAverageRerankTime(),
+				statistics.getMaxRerankTime()));
+	}
+
 }
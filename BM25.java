@@ -0,0 +1,101 @@
+/**
+ * Okapi BM25 relevance for one query against one {@link IndexSnapshot}. The
+ * score a word adds to a site grows with the word's frequency in the site but
+ * saturates, is scaled down for sites longer than average, and is weighted by
+ * the word's inverse document frequency, so rare words count for more and long
+ * pages no longer win by sheer size.
+ * 
+ * Everything that depends on the collection or the query, the average site
+ * length and the weight of every query word and phrase, is computed once when
+ * the scorer is made. Scoring a site then only needs the frequency and the
+ * site's length, both of which are at hand while walking the postings.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class BM25 implements Scorer {
+
+	/**
+	 * Makes BM25 scorers.
+	 */
+	public static final Scorer.Factory FACTORY = new Scorer.Factory() {
+		public Scorer newScorer(int documentCount, float averageLength,
+				int[] wordFrequencies, int[] phraseFrequencies) {
+			return new BM25(documentCount, averageLength, wordFrequencies,
+					phraseFrequencies);
+		}
+	};
+
+	// how quickly the score of a word saturates with its frequency
+	private static final float K1 = 1.2f;
+
+	// how strongly scores are normalized by site length
+	private static final float B = 0.75f;
+
+	private final float[] wordWeights;
+	private final float[] phraseWeights;
+
+	// the length part of the denominator is constant + slope * length
+	private final float constant;
+	private final float slope;
+
+	/**
+	 * Makes a scorer for a query.
+	 * 
+	 * @param documentCount
+	 *            number of sites in the snapshot
+	 * @param averageLength
+	 *            average number of words in a site
+	 * @param wordFrequencies
+	 *            document frequency of every loose query word
+	 * @param phraseFrequencies
+	 *            estimated document frequency of every phrase
+	 */
+	public BM25(int documentCount, float averageLength, int[] wordFrequencies,
+			int[] phraseFrequencies) {
+		wordWeights = new float[wordFrequencies.length];
+		for (int i = 0; i < wordWeights.length; i++) {
+			wordWeights[i] = weight(documentCount, wordFrequencies[i]);
+		}
+		phraseWeights = new float[phraseFrequencies.length];
+		for (int i = 0; i < phraseWeights.length; i++) {
+			phraseWeights[i] = weight(documentCount, phraseFrequencies[i]);
+		}
+
+		constant = K1 * (1 - B);
+		slope = averageLength > 0 ? K1 * B / averageLength : 0;
+	}
+
+	/**
+	 * Computes the weight of a word: its inverse document frequency times
+	 * k1 + 1, the score an infinitely frequent word would approach. The + 1
+	 * inside the logarithm keeps the weight positive for very common words.
+	 * 
+	 * @param documentCount
+	 * @param documentFrequency
+	 * @return weight
+	 */
+	private static float weight(int documentCount, int documentFrequency) {
+		int df = Math.min(documentFrequency, documentCount);
+		double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+		return (float) (idf * (K1 + 1));
+	}
+
+	public float[] getWordWeights() {
+		return wordWeights;
+	}
+
+	public float[] getPhraseWeights() {
+		return phraseWeights;
+	}
+
+	public float score(float weight, int frequency, int length) {
+		return weight * frequency / (frequency + constant + slope * length);
+	}
+
+	// the score grows with the frequency and shrinks with the length
+	public float maxScore(float weight, int maxFrequency, int minLength) {
+		return score(weight, maxFrequency, minLength);
+	}
+
+}
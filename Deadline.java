@@ -0,0 +1,71 @@
+/**
+ * A time budget for evaluating one query. Evaluation loops check it every so
+ * often and stop early once it has passed, so a pathological query returns
+ * the best results found so far instead of running for seconds. A deadline
+ * remembers whether any check found it passed, which tells the caller that
+ * the results are incomplete.
+ * 
+ * Threadsafe; the shards of a parallel search share one deadline.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class Deadline {
+
+	/**
+	 * A deadline that never passes.
+	 */
+	public static final Deadline NONE = new Deadline();
+
+	private final long end;
+	private final boolean unlimited;
+	private volatile boolean expired = false;
+
+	/**
+	 * Makes a deadline that passes after a number of milliseconds from now.
+	 * 
+	 * @param millis
+	 *            time budget, at least 0
+	 */
+	public Deadline(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Budget must not be negative.");
+		}
+		end = System.nanoTime() + millis * 1000000L;
+		unlimited = false;
+	}
+
+	/**
+	 * Makes a deadline that never passes.
+	 */
+	private Deadline() {
+		end = 0;
+		unlimited = true;
+	}
+
+	/**
+	 * Checks whether the deadline has passed.
+	 * 
+	 * @return true if evaluation should stop
+	 */
+	public boolean isExpired() {
+		if (unlimited) {
+			return false;
+		}
+		if (!expired && System.nanoTime() - end >= 0) {
+			expired = true;
+		}
+		return expired;
+	}
+
+	/**
+	 * Checks whether some check found the deadline passed, so a search using
+	 * it may have stopped early.
+	 * 
+	 * @return true if results may be truncated
+	 */
+	public boolean wasReached() {
+		return expired;
+	}
+
+}
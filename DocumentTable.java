@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A threadsafe registry that gives every crawled url a dense integer id. The
+ * index and searcher work on ids, and urls are only looked up again when
+ * results are displayed.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class DocumentTable {
+
+	private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private ArrayList<String> urls = new ArrayList<String>();
+
+	/**
+	 * Gets the id of a url, assigning the next id if the url is new.
+	 * 
+	 * @param url
+	 * @return document id
+	 */
+	public synchronized int add(String url) {
+		Integer id = ids.get(url);
+		if (id == null) {
+			id = urls.size();
+			ids.put(url, id);
+			urls.add(url);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the id of a url.
+	 * 
+	 * @param url
+	 * @return document id, or -1 if the url has not been added
+	 */
+	public synchronized int getId(String url) {
+		Integer id = ids.get(url);
+		if (id == null) {
+			return -1;
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the url of a document id.
+	 * 
+	 * @param id
+	 * @return url
+	 */
+	public synchronized String getUrl(int id) {
+		return urls.get(id);
+	}
+
+	/**
+	 * Gets the number of documents in the table.
+	 * 
+	 * @return size
+	 */
+	public synchronized int size() {
+		return urls.size();
+	}
+
+}
@@ -1,3 +1,4 @@
+import java.io.File;
 import java.io.IOException;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
@@ -7,6 +8,12 @@ import org.apache.log4j.PropertyConfigurator;
  * all pages that site links to until it runs out of links or crawls 30. Returns
  * search results.
  * 
+ * With -i, the index is loaded from that file at startup (when it exists) and
+ * saved back to it at shutdown; the seed is then optional. With -x, the index
+ * is also exported to that file at shutdown, as JSON lines if the name
+ * contains ".json" and gzip compressed if it ends with ".gz". With -o, the
+ * postings are kept off the Java heap.
+ * 
  * @author Steely Morneau
  * 
  */
@@ -26,23 +33,41 @@ public class Driver {
 
 		WorkQueue workers = WorkQueue.getInstance();
 
+		InvertedIndex index = InvertedIndex.getInstance();
+
 		// parse command line args and get seed
 		try {
-			String seed = p.getValue("-s");
-
-			URLParser parser = new URLParser(seed);
-			
-			// url is valid crawl seed
-			if (parser.isValid()) {
-				// add "/" to avoid 301 requests
-				seed = HTMLParser.addSlashIfNeeded(seed);
-				log.info("Seed: " + seed);
-				WebCrawler.addSeed(seed);
-				workers.execute(new WebCrawler(seed));
-
-			} else {
-				log.fatal("File is not a directory.");
-				System.exit(-1);
+			index.setOffHeap(p.hasFlag("-o"));
+
+			boolean saved = p.hasFlag("-i");
+			if (saved) {
+				// load the saved index before crawling adds to it
+				try {
+					index.open(new File(p.getValue("-i")));
+				} catch (IOException e) {
+					// the worker threads would keep the program running
+					log.fatal("Index can't be loaded.", e);
+					System.exit(-1);
+				}
+			}
+
+			if (!saved || p.hasFlag("-s")) {
+				String seed = p.getValue("-s");
+
+				URLParser parser = new URLParser(seed);
+
+				// url is valid crawl seed
+				if (parser.isValid()) {
+					// add "/" to avoid 301 requests
+					seed = HTMLParser.addSlashIfNeeded(seed);
+					log.info("Seed: " + seed);
+					WebCrawler.addSeed(seed);
+					workers.execute(new WebCrawler(seed));
+
+				} else {
+					log.fatal("File is not a directory.");
+					System.exit(-1);
+				}
 			}
 
 			ServerThread sThread = new ServerThread();
@@ -67,9 +92,18 @@ public class Driver {
 			workers.stopWorkers();
 			log.debug("After queue shutdown.");
 
-			InvertedIndex index = InvertedIndex.getInstance();
+			index.commit();
+			if (saved) {
+				index.save();
+			}
 			index.printIndex();
 
+			if (p.hasFlag("-x")) {
+				String export = p.getValue("-x");
+				index.export(new File(export), export.contains(".json"),
+						export.endsWith(".gz"));
+			}
+
 		} catch (BadArgumentException be) {
 			log.fatal("Bad command line arguments.");
 			System.exit(-1);
@@ -77,7 +111,7 @@ public class Driver {
 			log.fatal("InterruptedException");
 			System.exit(-1);
 		} catch (IOException e) {
-			log.error("Index can't be printed");
+			log.error("Index can't be saved or printed", e);
 		}
 
 		log.debug("The total number of crawled sites is "
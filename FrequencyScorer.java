@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+/**
+ * Scores a site by the plain number of times the query's words and phrases
+ * occur in it, as the search engine first did. Every word weighs the same and
+ * the length of the site is ignored.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class FrequencyScorer implements Scorer {
+
+	/**
+	 * Makes frequency scorers.
+	 */
+	public static final Scorer.Factory FACTORY = new Scorer.Factory() {
+		public Scorer newScorer(int documentCount, float averageLength,
+				int[] wordFrequencies, int[] phraseFrequencies) {
+			return new FrequencyScorer(wordFrequencies.length,
+					phraseFrequencies.length);
+		}
+	};
+
+	private final float[] wordWeights;
+	private final float[] phraseWeights;
+
+	/**
+	 * Makes a scorer for a query.
+	 * 
+	 * @param words
+	 *            number of loose query words
+	 * @param phrases
+	 *            number of phrases
+	 */
+	public FrequencyScorer(int words, int phrases) {
+		wordWeights = new float[words];
+		Arrays.fill(wordWeights, 1);
+		phraseWeights = new float[phrases];
+		Arrays.fill(phraseWeights, 1);
+	}
+
+	public float[] getWordWeights() {
+		return wordWeights;
+	}
+
+	public float[] getPhraseWeights() {
+		return phraseWeights;
+	}
+
+	public float score(float weight, int frequency, int length) {
+		return weight * frequency;
+	}
+
+	public float maxScore(float weight, int maxFrequency, int minLength) {
+		return weight * maxFrequency;
+	}
+
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Measures how indexing throughput scales with the number of crawler threads.
+ * Every thread indexes synthetic pages drawn from a skewed vocabulary into the
+ * shared {@link InvertedIndex}, so common words are contended the way they
+ * are during a real crawl. Not used by the search engine itself.
+ * 
+ * Usage: java IndexBenchmark [pages per thread]
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class IndexBenchmark {
+
+	private static final int VOCABULARY = 5000;
+	private static final int WORDS_PER_PAGE = 1000;
+
+	/**
+	 * Runs the benchmark with 1, 2, 4, 8 and 10 threads.
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		Logger.getRootLogger().setLevel(Level.INFO);
+
+		int pages = 200;
+		if (args.length > 0) {
+			pages = Integer.parseInt(args[0]);
+		}
+
+		String[] page = makePage(new Random(212));
+
+		// warm up the JIT before measuring
+		run(2, pages / 4, page);
+
+		int[] threadCounts = { 1, 2, 4, 8, 10 };
+		for (int threads : threadCounts) {
+			long elapsed = run(threads, pages, page);
+			long tokens = (long) threads * pages * WORDS_PER_PAGE;
+			System.out.println(threads + " threads: " + tokens + " words in "
+					+ elapsed / 1000000 + " ms ("
+					+ (tokens * 1000000000L / elapsed) + " words/sec)");
+		}
+	}
+
+	/**
+	 * Indexes pages on several threads at once.
+	 * 
+	 * @param threads
+	 * @param pages
+	 *            pages indexed by each thread
+	 * @param page
+	 *            words of the synthetic page
+	 * @return elapsed nanoseconds
+	 */
+	private static long run(int threads, final int pages, final String[] page)
+			throws InterruptedException {
+		final InvertedIndex index = InvertedIndex.getInstance();
+		final List<String> words = Arrays.asList(page);
+
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread() {
+				public void run() {
+					for (int p = 0; p < pages; p++) {
+						index.indexDocument(getName() + "/" + p + "/"
+								+ System.nanoTime(), words);
+					}
+				}
+			};
+		}
+
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Makes a page whose words follow a roughly Zipfian distribution.
+	 * 
+	 * @param random
+	 * @return words of the page
+	 */
+	private static String[] makePage(Random random) {
+		String[] page = new String[WORDS_PER_PAGE];
+		for (int i = 0; i < page.length; i++) {
+			// squaring a uniform value favors the low (common) word numbers
+			double u = random.nextDouble();
+			page[i] = "word" + (int) (u * u * VOCABULARY);
+		}
+		return page;
+	}
+
+}
@@ -0,0 +1,216 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the contents of an {@link IndexSnapshot} to a file, one word at a
+ * time. Since a snapshot never changes, the export needs no locking and
+ * crawling and searching carry on while it runs. Words are visited in sorted
+ * order by merging the sorted word lists of the segments, so no copy of the
+ * vocabulary is built in memory.
+ * 
+ * Two formats are supported: the plain text format of
+ * {@link InvertedIndex#printIndex()}, and JSON lines with one object per word:
+ * 
+ * <pre>
+ * {"word":"apple","sites":[{"url":"http://...","positions":[0,2]}]}
+ * </pre>
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class IndexExporter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private IndexSnapshot snapshot;
+	private boolean json;
+
+	/**
+	 * Makes an exporter for a snapshot.
+	 * 
+	 * @param snapshot
+	 * @param json
+	 *            if true, writes JSON lines instead of plain text
+	 */
+	public IndexExporter(IndexSnapshot snapshot, boolean json) {
+		this.snapshot = snapshot;
+		this.json = json;
+	}
+
+	/**
+	 * Writes the snapshot to a file.
+	 * 
+	 * @param file
+	 * @param gzip
+	 *            if true, the file is gzip compressed
+	 * @throws IOException
+	 */
+	public void export(File file, boolean gzip) throws IOException {
+		OutputStream stream = new FileOutputStream(file);
+		if (gzip) {
+			stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+		}
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"),
+				BUFFER_SIZE);
+		try {
+			export(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the snapshot to out.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void export(Writer out) throws IOException {
+		int count = snapshot.getSegmentCount();
+
+		// next word number in each segment
+		int[] cursors = new int[count];
+
+		while (true) {
+			// smallest word not written yet
+			String word = null;
+			for (int s = 0; s < count; s++) {
+				IndexSegment segment = snapshot.getSegment(s);
+				if (cursors[s] < segment.size()) {
+					String candidate = segment.getWord(cursors[s]);
+					if (word == null || candidate.compareTo(word) < 0) {
+						word = candidate;
+					}
+				}
+			}
+			if (word == null) {
+				break;
+			}
+
+			startWord(word, out);
+			boolean first = true;
+			for (int s = 0; s < count; s++) {
+				IndexSegment segment = snapshot.getSegment(s);
+				if (cursors[s] < segment.size()
+						&& segment.getWord(cursors[s]).equals(word)) {
+					PostingIterator postings = segment.postings(cursors[s]);
+					while (postings.next()) {
+						writeSite(segment.getUrl(postings.doc()),
+								postings.positions(), first, out);
+						first = false;
+					}
+					cursors[s]++;
+				}
+			}
+			endWord(out);
+		}
+
+		if (!json) {
+			out.write("\n\n");
+		}
+	}
+
+	/**
+	 * Writes what comes before the sites of a word.
+	 * 
+	 * @param word
+	 * @param out
+	 * @throws IOException
+	 */
+	private void startWord(String word, Writer out) throws IOException {
+		if (json) {
+			out.write("{\"word\":");
+			writeString(word, out);
+			out.write(",\"sites\":[");
+		} else {
+			out.write(word);
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes one site of a word and the positions of the word in it.
+	 * 
+	 * @param url
+	 * @param positions
+	 * @param first
+	 *            true for the first site of the word
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeSite(String url, PositionIterator positions,
+			boolean first, Writer out) throws IOException {
+		if (json) {
+			if (!first) {
+				out.write(',');
+			}
+			out.write("{\"url\":");
+			writeString(url, out);
+			out.write(",\"positions\":[");
+			boolean firstPosition = true;
+			while (positions.hasNext()) {
+				if (!firstPosition) {
+					out.write(',');
+				}
+				out.write(Integer.toString(positions.next()));
+				firstPosition = false;
+			}
+			out.write("]}");
+		} else {
+			out.write('"');
+			out.write(url);
+			out.write('"');
+			while (positions.hasNext()) {
+				out.write(", ");
+				out.write(Integer.toString(positions.next()));
+			}
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes what comes after the sites of a word.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	private void endWord(Writer out) throws IOException {
+		if (json) {
+			out.write("]}\n");
+		} else {
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes a quoted, escaped JSON string.
+	 * 
+	 * @param string
+	 * @param out
+	 * @throws IOException
+	 */
+	private static void writeString(String string, Writer out)
+			throws IOException {
+		out.write('"');
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			} else if (c < 0x20) {
+				out.write(String.format("\\u%04x", (int) c));
+			} else {
+				out.write(c);
+			}
+		}
+		out.write('"');
+	}
+
+}
@@ -0,0 +1,670 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable piece of the inverted index covering a contiguous range of
+ * document ids. Words are kept in a {@link TermTrie}, numbered in sorted
+ * order, and the posting lists of all words are packed one after another into
+ * a single buffer (see {@link PostingIterator} for the format). Since nothing
+ * changes after a segment is built, any number of threads can read it without
+ * locking; only the cache of merged prefix postings is synchronized.
+ * 
+ * The postings buffer can live off the Java heap: built and merged segments
+ * can keep it in a direct buffer, and a segment saved to a binary file and
+ * opened again with {@link #open(File)} reads it straight from the mapped
+ * file. Either way only the words and urls are on the heap, so the heap does
+ * not grow with the postings and the garbage collector never has to copy
+ * them.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class IndexSegment {
+
+	// "SEIX", marks a saved segment file
+	private static final int MAGIC = 0x53454958;
+	private static final int VERSION = 5;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// prefixes matching at least this many words have their postings merged
+	private static final int MERGED_PREFIX_WORDS = 32;
+
+	// most merged prefixes kept per segment
+	private static final int PREFIX_CACHE_SIZE = 64;
+
+	private final TermTrie words;
+
+	// sites containing words 0 to i - 1, so ranges of words sum in O(1)
+	private final int[] cumulativeFrequencies;
+
+	// largest number of occurrences of each word in one site
+	private final int[] maxFrequencies;
+
+	// postings of word i are in [offsets[i], offsets[i + 1])
+	private final int[] offsets;
+	private final ByteBuffer postings;
+
+	private final int firstDoc;
+	private final String[] urls;
+
+	// number of words in each site, for length normalization
+	private final int[] lengths;
+	private final long totalLength;
+	private final int minLength;
+
+	// static scores saved with the segment, by document id, or null
+	private final float[] staticScores;
+
+	// merged postings of recently searched short prefixes, least recent first
+	private final LinkedHashMap<String, PrefixPostings> prefixCache = new LinkedHashMap<String, PrefixPostings>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<String, PrefixPostings> eldest) {
+			return size() > PREFIX_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Makes a segment from its already encoded parts.
+	 * 
+	 * @param words
+	 *            sorted words
+	 * @param documentFrequencies
+	 *            number of sites containing each word
+	 * @param maxFrequencies
+	 *            most occurrences of each word in one site
+	 * @param offsets
+	 *            start of each word's postings, plus the end of the last
+	 * @param postings
+	 *            encoded posting lists
+	 * @param firstDoc
+	 *            id of the first document in the segment
+	 * @param urls
+	 *            urls of the documents, in id order
+	 * @param lengths
+	 *            number of words in each document, in id order
+	 */
+	public IndexSegment(String[] words, int[] documentFrequencies,
+			int[] maxFrequencies, int[] offsets, ByteBuffer postings,
+			int firstDoc, String[] urls, int[] lengths) {
+		this(words, documentFrequencies, maxFrequencies, offsets, postings,
+				firstDoc, urls, lengths, null);
+	}
+
+	/**
+	 * Makes a segment opened from a file, with the static scores saved in it.
+	 * 
+	 * @param words
+	 * @param documentFrequencies
+	 * @param maxFrequencies
+	 * @param offsets
+	 * @param postings
+	 * @param firstDoc
+	 * @param urls
+	 * @param lengths
+	 * @param staticScores
+	 *            static score of each document by id, or null
+	 */
+	private IndexSegment(String[] words, int[] documentFrequencies,
+			int[] maxFrequencies, int[] offsets, ByteBuffer postings,
+			int firstDoc, String[] urls, int[] lengths, float[] staticScores) {
+		this.words = new TermTrie(words);
+		this.staticScores = staticScores;
+		this.maxFrequencies = maxFrequencies;
+		this.offsets = offsets;
+		this.postings = postings;
+		this.firstDoc = firstDoc;
+		this.urls = urls;
+		this.lengths = lengths;
+
+		cumulativeFrequencies = new int[documentFrequencies.length + 1];
+		for (int i = 0; i < documentFrequencies.length; i++) {
+			cumulativeFrequencies[i + 1] = cumulativeFrequencies[i]
+					+ documentFrequencies[i];
+		}
+
+		long total = 0;
+		int min = lengths.length == 0 ? 0 : Integer.MAX_VALUE;
+		for (int length : lengths) {
+			total += length;
+			min = Math.min(min, length);
+		}
+		totalLength = total;
+		minLength = min;
+	}
+
+	/**
+	 * Builds a segment from the posting lists gathered for a batch of sites.
+	 * 
+	 * @param firstDoc
+	 *            id of the first site in the batch
+	 * @param urls
+	 *            urls of the sites, in id order
+	 * @param lengths
+	 *            number of words in each site, in id order
+	 * @param wordMap
+	 *            posting list of every word in the batch
+	 * @param direct
+	 *            if true, the postings are kept off the heap
+	 * @return segment
+	 */
+	public static IndexSegment build(int firstDoc, List<String> urls,
+			int[] lengths, Map<String, PostingList> wordMap, boolean direct) {
+		String[] words = wordMap.keySet().toArray(new String[wordMap.size()]);
+		Arrays.sort(words);
+
+		int[] documentFrequencies = new int[words.length];
+		int[] maxFrequencies = new int[words.length];
+		int[] offsets = new int[words.length + 1];
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PostingWriter writer = new PostingWriter();
+
+		for (int i = 0; i < words.length; i++) {
+			PostingList list = wordMap.get(words[i]);
+			documentFrequencies[i] = list.size();
+			offsets[i] = out.size();
+
+			for (int j = 0; j < list.size(); j++) {
+				writer.add(list.getDocument(j), list.getPositions(j));
+			}
+			maxFrequencies[i] = writer.getMaxFrequency();
+			writer.writeTo(out);
+		}
+		offsets[words.length] = out.size();
+
+		return new IndexSegment(words, documentFrequencies, maxFrequencies,
+				offsets, toBuffer(out, direct), firstDoc,
+				urls.toArray(new String[urls.size()]), lengths);
+	}
+
+	/**
+	 * Merges segments with adjacent document ranges into one segment. The
+	 * posting lists of each word are concatenated in document order; the
+	 * encoded positions are copied as they are, while the document gaps and
+	 * skip pointers are written anew.
+	 * 
+	 * @param segments
+	 *            segments ordered by document id, with no gaps between them
+	 * @param direct
+	 *            if true, the merged postings are kept off the heap
+	 * @return merged segment
+	 */
+	public static IndexSegment merge(IndexSegment[] segments, boolean direct) {
+		ArrayList<String> words = new ArrayList<String>();
+		ArrayList<Integer> documentFrequencies = new ArrayList<Integer>();
+		ArrayList<Integer> maxFrequencies = new ArrayList<Integer>();
+		ArrayList<Integer> offsets = new ArrayList<Integer>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PostingWriter writer = new PostingWriter();
+
+		// next word number in each segment
+		int[] cursors = new int[segments.length];
+
+		while (true) {
+			// smallest word not merged yet
+			String word = null;
+			for (int s = 0; s < segments.length; s++) {
+				if (cursors[s] < segments[s].size()) {
+					String candidate = segments[s].getWord(cursors[s]);
+					if (word == null || candidate.compareTo(word) < 0) {
+						word = candidate;
+					}
+				}
+			}
+			if (word == null) {
+				break;
+			}
+
+			words.add(word);
+			offsets.add(out.size());
+
+			for (int s = 0; s < segments.length; s++) {
+				if (cursors[s] < segments[s].size()
+						&& segments[s].getWord(cursors[s]).equals(word)) {
+					PostingIterator postings = segments[s].postings(cursors[s]);
+					while (postings.next()) {
+						writer.add(postings);
+					}
+					cursors[s]++;
+				}
+			}
+			documentFrequencies.add(writer.size());
+			maxFrequencies.add(writer.getMaxFrequency());
+			writer.writeTo(out);
+		}
+		offsets.add(out.size());
+
+		ArrayList<String> urls = new ArrayList<String>();
+		for (IndexSegment segment : segments) {
+			urls.addAll(Arrays.asList(segment.urls));
+		}
+		int[] lengths = new int[urls.size()];
+		int copied = 0;
+		for (IndexSegment segment : segments) {
+			System.arraycopy(segment.lengths, 0, lengths, copied,
+					segment.lengths.length);
+			copied += segment.lengths.length;
+		}
+
+		return new IndexSegment(words.toArray(new String[words.size()]),
+				toArray(documentFrequencies), toArray(maxFrequencies),
+				toArray(offsets), toBuffer(out, direct), segments[0].firstDoc,
+				urls.toArray(new String[urls.size()]), lengths);
+	}
+
+	/**
+	 * Moves encoded postings into the buffer a segment reads them from.
+	 * 
+	 * @param out
+	 *            encoded postings
+	 * @param direct
+	 *            if true, copies them into a direct buffer outside the heap
+	 * @return postings buffer
+	 */
+	private static ByteBuffer toBuffer(ByteArrayOutputStream out,
+			boolean direct) {
+		if (!direct) {
+			return ByteBuffer.wrap(out.toByteArray());
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(out.size());
+		buffer.put(out.toByteArray());
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Unboxes a list of integers.
+	 * 
+	 * @param list
+	 * @return array
+	 */
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Gets the number of words in the segment.
+	 * 
+	 * @return number of words
+	 */
+	public int size() {
+		return words.size();
+	}
+
+	/**
+	 * Gets a word by its number in sorted order.
+	 * 
+	 * @param i
+	 * @return word
+	 */
+	public String getWord(int i) {
+		return words.getWord(i);
+	}
+
+	/**
+	 * Finds the number of a word.
+	 * 
+	 * @param word
+	 * @return number of the word, or -1 if it is not in the segment
+	 */
+	public int find(String word) {
+		return words.find(word);
+	}
+
+	/**
+	 * Gets the number of the first word that starts with prefix. The words
+	 * starting with prefix are numbered from here up to
+	 * {@link #prefixEnd(String)}.
+	 * 
+	 * @param prefix
+	 * @return number of the first matching word
+	 */
+	public int prefixStart(String prefix) {
+		return words.prefixStart(prefix);
+	}
+
+	/**
+	 * Gets the number just past the last word that starts with prefix.
+	 * 
+	 * @param prefix
+	 * @return end of the matching word numbers
+	 */
+	public int prefixEnd(String prefix) {
+		return words.prefixEnd(prefix);
+	}
+
+	/**
+	 * Gets the merged postings of every word starting with prefix, if there
+	 * are enough such words to make merging them worthwhile. The merged list
+	 * is cached, and since a segment never changes, it stays valid for the
+	 * life of the segment: words added to the index later go into new
+	 * segments. A merge cut short by the deadline is not cached.
+	 * 
+	 * @param prefix
+	 * @param deadline
+	 *            merging stops once it has passed
+	 * @return merged postings, or null if few words start with prefix or the
+	 *         deadline passed before they were merged
+	 */
+	public PrefixPostings getPrefixPostings(String prefix, Deadline deadline) {
+		int start = words.prefixStart(prefix);
+		int end = words.prefixEnd(prefix);
+		if (end - start < MERGED_PREFIX_WORDS) {
+			return null;
+		}
+
+		PrefixPostings merged;
+		synchronized (prefixCache) {
+			merged = prefixCache.get(prefix);
+		}
+		if (merged == null) {
+			// merge without holding the lock; concurrent searches for the
+			// same prefix may each merge it, but the shards of one search do
+			// not, since IndexSnapshot merges their prefixes before they start
+			merged = PrefixPostings.merge(this, start, end, deadline);
+			if (merged != null) {
+				synchronized (prefixCache) {
+					prefixCache.put(prefix, merged);
+				}
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Gets the number of sites in the segment that contain a word.
+	 * 
+	 * @param i
+	 *            number of the word
+	 * @return document frequency
+	 */
+	public int getDocumentFrequency(int i) {
+		return cumulativeFrequencies[i + 1] - cumulativeFrequencies[i];
+	}
+
+	/**
+	 * Gets the total document frequency of a range of words, such as the words
+	 * starting with a prefix. A site containing several of the words is
+	 * counted once for each.
+	 * 
+	 * @param start
+	 *            number of the first word
+	 * @param end
+	 *            number just past the last word
+	 * @return sum of the document frequencies
+	 */
+	public int getDocumentFrequency(int start, int end) {
+		return cumulativeFrequencies[end] - cumulativeFrequencies[start];
+	}
+
+	/**
+	 * Gets the largest number of times a word occurs in any one site of the
+	 * segment, an upper bound on the rank the word adds to a site.
+	 * 
+	 * @param i
+	 *            number of the word
+	 * @return maximum frequency
+	 */
+	public int getMaxFrequency(int i) {
+		return maxFrequencies[i];
+	}
+
+	/**
+	 * Gets an iterator over the posting list of a word.
+	 * 
+	 * @param i
+	 *            number of the word
+	 * @return posting iterator
+	 */
+	public PostingIterator postings(int i) {
+		return new PostingIterator(postings, offsets[i],
+				getDocumentFrequency(i));
+	}
+
+	/**
+	 * Gets the id of the first document in the segment.
+	 * 
+	 * @return document id
+	 */
+	public int getFirstDocument() {
+		return firstDoc;
+	}
+
+	/**
+	 * Gets the number of documents in the segment.
+	 * 
+	 * @return document count
+	 */
+	public int getDocumentCount() {
+		return urls.length;
+	}
+
+	/**
+	 * Checks whether a document id belongs to this segment.
+	 * 
+	 * @param doc
+	 * @return true if the document is in the segment
+	 */
+	public boolean containsDocument(int doc) {
+		return doc >= firstDoc && doc < firstDoc + urls.length;
+	}
+
+	/**
+	 * Gets the url of a document in the segment.
+	 * 
+	 * @param doc
+	 * @return url
+	 */
+	public String getUrl(int doc) {
+		return urls[doc - firstDoc];
+	}
+
+	/**
+	 * Gets the number of words in a document of the segment.
+	 * 
+	 * @param doc
+	 * @return length
+	 */
+	public int getLength(int doc) {
+		return lengths[doc - firstDoc];
+	}
+
+	/**
+	 * Gets the number of words in all documents of the segment together.
+	 * 
+	 * @return total length
+	 */
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	/**
+	 * Gets the number of words in the shortest document of the segment.
+	 * 
+	 * @return minimum length, or 0 if the segment is empty
+	 */
+	public int getMinLength() {
+		return minLength;
+	}
+
+	/**
+	 * Gets the static scores saved with the segment, such as the PageRank of
+	 * its documents when the index was saved.
+	 * 
+	 * @return score of each document by id, or null if none were saved
+	 */
+	public float[] getStaticScores() {
+		return staticScores;
+	}
+
+	/**
+	 * Saves the segment to a binary file. The file holds a header, the
+	 * document table (urls, lengths and, if the documents were ranked, static
+	 * scores in id order), the word dictionary (each word with its document
+	 * frequency, maximum frequency and postings offset) and finally the
+	 * postings exactly as they are stored in memory.
+	 * 
+	 * @param file
+	 * @param staticScores
+	 *            static score of each document by id, or null if the
+	 *            documents have not been ranked; documents past the end of
+	 *            the array are saved with a score of 0
+	 * @throws IOException
+	 */
+	public void write(File file, float[] staticScores) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			out.writeInt(firstDoc);
+			out.writeInt(urls.length);
+			out.writeBoolean(staticScores != null);
+			for (int i = 0; i < urls.length; i++) {
+				writeString(urls[i], out);
+				out.writeInt(lengths[i]);
+				if (staticScores != null) {
+					int doc = firstDoc + i;
+					out.writeFloat(doc < staticScores.length ? staticScores[doc]
+							: 0);
+				}
+			}
+
+			out.writeInt(words.size());
+			for (int i = 0; i < words.size(); i++) {
+				writeString(words.getWord(i), out);
+				out.writeInt(getDocumentFrequency(i));
+				out.writeInt(maxFrequencies[i]);
+				out.writeInt(offsets[i]);
+			}
+
+			int length = offsets[words.size()];
+			out.writeInt(length);
+			byte[] chunk = new byte[1 << 16];
+			ByteBuffer source = postings.duplicate();
+			source.position(0);
+			for (int done = 0; done < length; done += chunk.length) {
+				int n = Math.min(chunk.length, length - done);
+				source.get(chunk, 0, n);
+				out.write(chunk, 0, n);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Opens a segment saved by {@link #write(File, float[])}. The file is
+	 * memory mapped and the postings are used in place, so opening takes about
+	 * as long as reading the words and urls.
+	 * 
+	 * @param file
+	 * @return segment
+	 * @throws IOException
+	 *             if the file cannot be read or is not a segment file
+	 */
+	public static IndexSegment open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buffer;
+		try {
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} finally {
+			// the mapping stays valid after the file is closed
+			raf.close();
+		}
+
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException(file + " is not an index file.");
+		}
+		if (buffer.getInt() != VERSION) {
+			throw new IOException(file
+					+ " was saved in an older format; delete it and crawl again.");
+		}
+
+		int firstDoc = buffer.getInt();
+		String[] urls = new String[buffer.getInt()];
+		int[] lengths = new int[urls.length];
+		float[] staticScores = buffer.get() != 0 ? new float[firstDoc
+				+ urls.length] : null;
+		for (int i = 0; i < urls.length; i++) {
+			urls[i] = readString(buffer);
+			lengths[i] = buffer.getInt();
+			if (staticScores != null) {
+				staticScores[firstDoc + i] = buffer.getFloat();
+			}
+		}
+
+		int count = buffer.getInt();
+		String[] words = new String[count];
+		int[] documentFrequencies = new int[count];
+		int[] maxFrequencies = new int[count];
+		int[] offsets = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			words[i] = readString(buffer);
+			documentFrequencies[i] = buffer.getInt();
+			maxFrequencies[i] = buffer.getInt();
+			offsets[i] = buffer.getInt();
+		}
+		offsets[count] = buffer.getInt();
+
+		// the postings are the rest of the file
+		ByteBuffer postings = buffer.slice();
+		postings.limit(offsets[count]);
+
+		return new IndexSegment(words, documentFrequencies, maxFrequencies,
+				offsets, postings, firstDoc, urls, lengths, staticScores);
+	}
+
+	/**
+	 * Writes a string as its UTF-8 length and bytes.
+	 * 
+	 * @param string
+	 * @param out
+	 * @throws IOException
+	 */
+	private static void writeString(String string, DataOutputStream out)
+			throws IOException {
+		byte[] bytes = string.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(String, DataOutputStream)}
+	 * at the buffer's position.
+	 * 
+	 * @param buffer
+	 * @return string
+	 */
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
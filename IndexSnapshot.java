@@ -0,0 +1,779 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * An immutable, versioned view of the inverted index: the list of segments
+ * that had been committed when the snapshot was published. Searches run
+ * against one snapshot from start to finish without any locking, while the
+ * crawler keeps committing new segments into newer snapshots.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class IndexSnapshot {
+
+	// fewest documents worth searching on a thread of their own
+	private static final int MIN_SHARD_DOCUMENTS = 4096;
+
+	// sites visited between two looks at the clock, a power of two
+	private static final int CHECK_INTERVAL = 256;
+
+	private final IndexSegment[] segments;
+	private final long generation;
+
+	// collection statistics for scoring, kept with every published snapshot
+	private final int documentCount;
+	private final long totalLength;
+
+	// query independent score of each document, or null before ranking
+	private final float[] staticScores;
+
+	/**
+	 * Makes a snapshot of segments, ordered by document id.
+	 * 
+	 * @param segments
+	 * @param generation
+	 *            version of the snapshot, increased by every commit and merge
+	 */
+	public IndexSnapshot(IndexSegment[] segments, long generation) {
+		this(segments, generation, null);
+	}
+
+	/**
+	 * Makes a snapshot of segments with static scores.
+	 * 
+	 * @param segments
+	 * @param generation
+	 * @param staticScores
+	 *            query independent score of each document, or null
+	 */
+	private IndexSnapshot(IndexSegment[] segments, long generation,
+			float[] staticScores) {
+		this.segments = segments;
+		this.generation = generation;
+		this.staticScores = staticScores;
+
+		int count = 0;
+		long length = 0;
+		for (IndexSegment segment : segments) {
+			count += segment.getDocumentCount();
+			length += segment.getTotalLength();
+		}
+		documentCount = count;
+		totalLength = length;
+	}
+
+	/**
+	 * Makes the next snapshot, with one more segment at the end.
+	 * 
+	 * @param segment
+	 *            segment with higher document ids than any in this snapshot
+	 * @return new snapshot
+	 */
+	public IndexSnapshot withSegment(IndexSegment segment) {
+		IndexSegment[] grown = new IndexSegment[segments.length + 1];
+		System.arraycopy(segments, 0, grown, 0, segments.length);
+		grown[segments.length] = segment;
+		return new IndexSnapshot(grown, generation + 1, staticScores);
+	}
+
+	/**
+	 * Makes the next snapshot, with a run of segments replaced by the segment
+	 * they were merged into.
+	 * 
+	 * @param start
+	 *            number of the first merged segment
+	 * @param count
+	 *            number of merged segments
+	 * @param merged
+	 * @return new snapshot
+	 */
+	public IndexSnapshot withMerged(int start, int count, IndexSegment merged) {
+		IndexSegment[] shrunk = new IndexSegment[segments.length - count + 1];
+		System.arraycopy(segments, 0, shrunk, 0, start);
+		shrunk[start] = merged;
+		System.arraycopy(segments, start + count, shrunk, start + 1,
+				segments.length - start - count);
+		return new IndexSnapshot(shrunk, generation + 1, staticScores);
+	}
+
+	/**
+	 * Makes the next snapshot, with new static scores for the documents.
+	 * Documents added later have no static score until the next ranking.
+	 * 
+	 * @param scores
+	 *            query independent score of each document, by document id
+	 * @return new snapshot
+	 */
+	public IndexSnapshot withStaticScores(float[] scores) {
+		return new IndexSnapshot(segments, generation + 1, scores);
+	}
+
+	/**
+	 * Gets the static scores of the documents, such as their PageRank.
+	 * 
+	 * @return score of each document by id, or null if none were computed;
+	 *         documents past the end of the array have none
+	 */
+	public float[] getStaticScores() {
+		return staticScores;
+	}
+
+	/**
+	 * Gets the version of the snapshot.
+	 * 
+	 * @return generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Gets the number of segments in the snapshot.
+	 * 
+	 * @return segment count
+	 */
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	/**
+	 * Gets a segment of the snapshot.
+	 * 
+	 * @param i
+	 * @return segment
+	 */
+	public IndexSegment getSegment(int i) {
+		return segments[i];
+	}
+
+	/**
+	 * Gets the number of documents in the snapshot.
+	 * 
+	 * @return document count
+	 */
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	/**
+	 * Gets the average number of words in a document of the snapshot.
+	 * 
+	 * @return average length, or 0 if the snapshot is empty
+	 */
+	public float getAverageLength() {
+		return documentCount == 0 ? 0 : (float) totalLength / documentCount;
+	}
+
+	/**
+	 * Gets the number of documents containing a word, summed over the
+	 * segments. For a partial word the frequencies of every word starting with
+	 * it are added up, which overcounts sites containing several of them.
+	 * 
+	 * @param word
+	 * @param partial
+	 *            if true, also counts every word starting with word
+	 * @return document frequency
+	 */
+	public int getDocumentFrequency(String word, boolean partial) {
+		int frequency = 0;
+		for (IndexSegment segment : segments) {
+			if (partial) {
+				frequency += segment.getDocumentFrequency(
+						segment.prefixStart(word), segment.prefixEnd(word));
+			} else {
+				int i = segment.find(word);
+				if (i >= 0) {
+					frequency += segment.getDocumentFrequency(i);
+				}
+			}
+		}
+		return Math.min(frequency, documentCount);
+	}
+
+	/**
+	 * Makes the scorer of a query from the statistics of this snapshot. A
+	 * phrase is treated as if it were as common as its rarest word.
+	 * 
+	 * @param query
+	 * @param partial
+	 *            if true, loose query words also match every word starting
+	 *            with them
+	 * @param factory
+	 *            kind of scorer to make, such as {@link BM25#FACTORY}
+	 * @return scorer
+	 */
+	public Scorer getScorer(Query query, boolean partial,
+			Scorer.Factory factory) {
+		String[] words = query.getWords();
+		int[] wordFrequencies = new int[words.length];
+		for (int i = 0; i < words.length; i++) {
+			wordFrequencies[i] = getDocumentFrequency(words[i], partial);
+		}
+
+		List<String[]> phrases = query.getPhrases();
+		int[] phraseFrequencies = new int[phrases.size()];
+		for (int i = 0; i < phraseFrequencies.length; i++) {
+			int rarest = documentCount;
+			for (String word : phrases.get(i)) {
+				rarest = Math.min(rarest, getDocumentFrequency(word, false));
+			}
+			phraseFrequencies[i] = rarest;
+		}
+
+		return factory.newScorer(documentCount, getAverageLength(),
+				wordFrequencies, phraseFrequencies);
+	}
+
+	/**
+	 * Adds the score of every site matching a query to scores. Only the query
+	 * words and phrases are scored; the static score of a site is added by the
+	 * {@link Reranker}.
+	 * 
+	 * @param query
+	 * @param partial
+	 *            if true, loose query words also match every word starting
+	 *            with them; phrase words always match exactly
+	 * @param scorer
+	 *            made for the query by {@link #getScorer}
+	 * @param scores
+	 * @param deadline
+	 *            evaluation stops early, with the scores found so far, once it
+	 *            has passed
+	 */
+	public void addRanks(Query query, boolean partial, Scorer scorer,
+			ScoreAccumulator scores, Deadline deadline) {
+		for (IndexSegment segment : segments) {
+			addRanks(segment, segment.getFirstDocument(), end(segment), query,
+					partial, scorer, scores, deadline);
+		}
+	}
+
+	/**
+	 * Adds the score of every site in a range of a segment that matches a
+	 * query to scores.
+	 * 
+	 * @param segment
+	 * @param from
+	 *            first document id of the range
+	 * @param to
+	 *            document id just past the range
+	 * @param query
+	 * @param partial
+	 * @param scorer
+	 * @param scores
+	 * @param deadline
+	 */
+	private static void addRanks(IndexSegment segment, int from, int to,
+			Query query, boolean partial, Scorer scorer,
+			ScoreAccumulator scores, Deadline deadline) {
+		String[] words = query.getWords();
+		List<String[]> phrases = query.getPhrases();
+		float[] wordWeights = scorer.getWordWeights();
+		float[] phraseWeights = scorer.getPhraseWeights();
+
+		if (query.isConjunctive()) {
+			addMatches(segment, from, to, words, wordWeights, phrases,
+					phraseWeights, partial, scorer, scores, deadline);
+			return;
+		}
+
+		for (int w = 0; w < words.length; w++) {
+			// a partial cursor sums the frequencies of the words it covers
+			WordCursor cursor = new WordCursor(segment, words[w], partial,
+					deadline);
+			int n = 0;
+			for (boolean more = cursor.advance(from); more
+					&& cursor.doc() < to; more = cursor
+					.advance(cursor.doc() + 1)) {
+				if ((++n & (CHECK_INTERVAL - 1)) == 0 && deadline.isExpired()) {
+					return;
+				}
+				int doc = cursor.doc();
+				scores.add(doc, scorer.score(wordWeights[w],
+						cursor.frequency(), segment.getLength(doc)));
+			}
+		}
+		for (int p = 0; p < phrases.size(); p++) {
+			List<String[]> single = new ArrayList<String[]>(1);
+			single.add(phrases.get(p));
+			addMatches(segment, from, to, new String[0], new float[0], single,
+					new float[] { phraseWeights[p] }, false, scorer, scores,
+					deadline);
+		}
+	}
+
+	/**
+	 * Finds the k best scoring sites matching a query, one segment after
+	 * another on the calling thread.
+	 * 
+	 * @param query
+	 * @param partial
+	 *            if true, loose query words also match every word starting
+	 *            with them
+	 * @param k
+	 *            number of sites wanted
+	 * @param scorer
+	 *            made for the query by {@link #getScorer}
+	 * @param deadline
+	 *            evaluation stops early, with the best sites found so far,
+	 *            once it has passed
+	 * @return best sites
+	 */
+	public TopDocs topRanks(Query query, boolean partial, int k,
+			Scorer scorer, Deadline deadline) {
+		TopDocs top = new TopDocs(k);
+
+		// segments are in document order, so sites are offered in order too
+		for (IndexSegment segment : segments) {
+			addTopRanks(segment, segment.getFirstDocument(), end(segment),
+					query, partial, scorer, top, deadline);
+		}
+		return top;
+	}
+
+	/**
+	 * Finds the k best scoring sites matching a query, splitting the snapshot
+	 * into shards of neighboring document ids that are searched in parallel
+	 * by executor. Every shard collects its own top k, and those are merged at
+	 * the end; since no two shards share a site, nothing else needs merging.
+	 * Small snapshots, and executors with a single thread, are searched on the
+	 * calling thread instead. For a partial query, the prefixes are merged
+	 * once per segment before the shards start.
+	 * 
+	 * @param query
+	 * @param partial
+	 *            if true, loose query words also match every word starting
+	 *            with them
+	 * @param k
+	 *            number of sites wanted
+	 * @param scorer
+	 *            made for the query by {@link #getScorer}, shared by every
+	 *            shard so all of them score with the whole snapshot's
+	 *            statistics
+	 * @param deadline
+	 *            shared by every shard
+	 * @param executor
+	 * @return best sites
+	 */
+	public TopDocs topRanks(final Query query, final boolean partial,
+			final int k, final Scorer scorer, final Deadline deadline,
+			SearchExecutor executor) {
+		int threads = executor.getThreadCount();
+		if (threads == 1 || documentCount < 2 * MIN_SHARD_DOCUMENTS) {
+			return topRanks(query, partial, k, scorer, deadline);
+		}
+
+		// shards of a segment would each merge the same prefixes on a miss
+		if (partial) {
+			mergePrefixes(query.getWords(), deadline, executor);
+		}
+
+		int shardSize = Math.max(MIN_SHARD_DOCUMENTS,
+				(documentCount + threads - 1) / threads);
+
+		// shards never cross segments, a large segment is cut into several
+		ArrayList<Callable<TopDocs>> shards = new ArrayList<Callable<TopDocs>>();
+		for (final IndexSegment segment : segments) {
+			for (int from = segment.getFirstDocument(); from < end(segment); from += shardSize) {
+				final int shardFrom = from;
+				final int shardTo = Math.min(end(segment), from + shardSize);
+				shards.add(new Callable<TopDocs>() {
+					public TopDocs call() {
+						TopDocs top = new TopDocs(k);
+						addTopRanks(segment, shardFrom, shardTo, query,
+								partial, scorer, top, deadline);
+						return top;
+					}
+				});
+			}
+		}
+
+		TopDocs top = new TopDocs(k);
+		for (TopDocs shard : executor.invokeAll(shards)) {
+			top.offerAll(shard);
+		}
+		return top;
+	}
+
+	/**
+	 * Merges the postings of every query word's prefix in every segment, one
+	 * task per segment, so that the shards searching a segment afterwards
+	 * find them in its cache instead of each merging them again.
+	 * 
+	 * @param words
+	 *            loose query words
+	 * @param deadline
+	 *            bounds the merging, as it does in the shards
+	 * @param executor
+	 */
+	private void mergePrefixes(final String[] words, final Deadline deadline,
+			SearchExecutor executor) {
+		ArrayList<Callable<Void>> merges = new ArrayList<Callable<Void>>();
+		for (final IndexSegment segment : segments) {
+			merges.add(new Callable<Void>() {
+				public Void call() {
+					for (String word : words) {
+						segment.getPrefixPostings(word, deadline);
+					}
+					return null;
+				}
+			});
+		}
+		executor.invokeAll(merges);
+	}
+
+	/**
+	 * Offers the sites in a range of a segment that match a query to top. An
+	 * OR query of loose words is evaluated with WAND, so only sites that could
+	 * still make top are fully scored; other queries are scored in full in the
+	 * calling thread's {@link ScoreAccumulator} and then offered.
+	 * 
+	 * @param segment
+	 * @param from
+	 *            first document id of the range
+	 * @param to
+	 *            document id just past the range
+	 * @param query
+	 * @param partial
+	 * @param scorer
+	 * @param top
+	 * @param deadline
+	 */
+	private static void addTopRanks(IndexSegment segment, int from, int to,
+			Query query, boolean partial, Scorer scorer, TopDocs top,
+			Deadline deadline) {
+		if (query.isConjunctive() || !query.getPhrases().isEmpty()) {
+			ScoreAccumulator scores = ScoreAccumulator.forCurrentThread();
+			addRanks(segment, from, to, query, partial, scorer, scores,
+					deadline);
+			for (int i = 0; i < scores.size(); i++) {
+				int doc = scores.getDocument(i);
+				top.offer(doc, scores.getRank(doc));
+			}
+		} else {
+			addTopRanks(segment, from, to, query.getWords(), partial, scorer,
+					top, deadline);
+		}
+	}
+
+	/**
+	 * Offers the sites in a range of a segment containing any of the words to
+	 * top, using WAND. The cursors are kept sorted by their current site.
+	 * Adding up the maximum scores of the cursors in that order, the pivot is
+	 * the first cursor at which the sum exceeds the score needed to enter top.
+	 * A site before the pivot's can only contain words of the cursors before
+	 * the pivot, which together cannot score high enough, so those cursors
+	 * skip straight to the pivot's site.
+	 * 
+	 * @param segment
+	 * @param from
+	 *            first document id of the range
+	 * @param to
+	 *            document id just past the range
+	 * @param words
+	 * @param partial
+	 *            if true, words also match every word starting with them
+	 * @param scorer
+	 * @param top
+	 * @param deadline
+	 */
+	private static void addTopRanks(IndexSegment segment, int from, int to,
+			String[] words, boolean partial, Scorer scorer, TopDocs top,
+			Deadline deadline) {
+		float[] wordWeights = scorer.getWordWeights();
+
+		// weight and score bound of each cursor, indexed by query word
+		WordCursor[] cursors = new WordCursor[words.length];
+		int[] wordOf = new int[words.length];
+		float[] maxScores = new float[words.length];
+		int live = 0;
+		for (int w = 0; w < words.length; w++) {
+			WordCursor cursor = new WordCursor(segment, words[w], partial,
+					deadline);
+			maxScores[w] = scorer.maxScore(wordWeights[w],
+					cursor.getMaxFrequency(), segment.getMinLength());
+			if (cursor.advance(from)) {
+				wordOf[live] = w;
+				cursors[live++] = cursor;
+			}
+		}
+
+		for (int n = 0; live > 0; n++) {
+			if ((n & (CHECK_INTERVAL - 1)) == 0 && deadline.isExpired()) {
+				return;
+			}
+			sortByDocument(cursors, wordOf, live);
+
+			float threshold = top.getThreshold();
+			float bound = 0;
+			int pivot = -1;
+			for (int i = 0; i < live; i++) {
+				bound += maxScores[wordOf[i]];
+				if (bound > threshold) {
+					pivot = i;
+					break;
+				}
+			}
+			if (pivot < 0 || cursors[pivot].doc() >= to) {
+				// no remaining site in the range can score high enough
+				return;
+			}
+
+			int doc = cursors[pivot].doc();
+			if (cursors[0].doc() == doc) {
+				int length = segment.getLength(doc);
+				float score = 0;
+				for (int i = 0; i < live && cursors[i].doc() == doc; i++) {
+					score += scorer.score(wordWeights[wordOf[i]],
+							cursors[i].frequency(), length);
+				}
+				top.offer(doc, score);
+				doc++;
+			}
+
+			// move the cursors behind doc up to it, dropping finished ones
+			int kept = 0;
+			for (int i = 0; i < live; i++) {
+				if (cursors[i].doc() >= doc || cursors[i].advance(doc)) {
+					wordOf[kept] = wordOf[i];
+					cursors[kept++] = cursors[i];
+				}
+			}
+			live = kept;
+		}
+	}
+
+	/**
+	 * Gets the document id just past the last document of a segment.
+	 * 
+	 * @param segment
+	 * @return end of the segment's document ids
+	 */
+	private static int end(IndexSegment segment) {
+		return segment.getFirstDocument() + segment.getDocumentCount();
+	}
+
+	/**
+	 * Sorts the first count cursors by their current site, along with the
+	 * numbers of their query words. Queries have few words and the cursors
+	 * are nearly sorted already, so this is an insertion sort.
+	 * 
+	 * @param cursors
+	 * @param wordOf
+	 *            query word of each cursor
+	 * @param count
+	 */
+	private static void sortByDocument(WordCursor[] cursors, int[] wordOf,
+			int count) {
+		for (int i = 1; i < count; i++) {
+			WordCursor cursor = cursors[i];
+			int word = wordOf[i];
+			int j = i - 1;
+			while (j >= 0 && cursors[j].doc() > cursor.doc()) {
+				cursors[j + 1] = cursors[j];
+				wordOf[j + 1] = wordOf[j];
+				j--;
+			}
+			cursors[j + 1] = cursor;
+			wordOf[j + 1] = word;
+		}
+	}
+
+	/**
+	 * Adds the score of every site in a range of a segment that contains all
+	 * of the words and all of the phrases. The cursors of every word are
+	 * intersected by leapfrogging, led by the rarest word, and then the
+	 * positions of the phrase words are checked in each site they all share.
+	 * 
+	 * @param segment
+	 * @param from
+	 *            first document id of the range
+	 * @param to
+	 *            document id just past the range
+	 * @param words
+	 * @param wordWeights
+	 *            weight of each word
+	 * @param phrases
+	 * @param phraseWeights
+	 *            weight of each phrase
+	 * @param partial
+	 *            if true, words also match every word starting with them
+	 * @param scorer
+	 * @param scores
+	 * @param deadline
+	 */
+	private static void addMatches(IndexSegment segment, int from, int to,
+			String[] words, float[] wordWeights, List<String[]> phrases,
+			float[] phraseWeights, boolean partial, Scorer scorer,
+			ScoreAccumulator scores, Deadline deadline) {
+		WordCursor[] wordCursors = new WordCursor[words.length];
+		WordCursor[][] phraseCursors = new WordCursor[phrases.size()][];
+		ArrayList<WordCursor> all = new ArrayList<WordCursor>();
+
+		for (int i = 0; i < words.length; i++) {
+			wordCursors[i] = new WordCursor(segment, words[i], partial,
+					deadline);
+			all.add(wordCursors[i]);
+		}
+		for (int i = 0; i < phraseCursors.length; i++) {
+			String[] phrase = phrases.get(i);
+			phraseCursors[i] = new WordCursor[phrase.length];
+			for (int j = 0; j < phrase.length; j++) {
+				phraseCursors[i][j] = new WordCursor(segment, phrase[j],
+						false, deadline);
+				all.add(phraseCursors[i][j]);
+			}
+		}
+		if (all.isEmpty()) {
+			return;
+		}
+
+		WordCursor[] cursors = all.toArray(new WordCursor[all.size()]);
+		Arrays.sort(cursors, new Comparator<WordCursor>() {
+			public int compare(WordCursor a, WordCursor b) {
+				return Integer.compare(a.getDocumentFrequency(),
+						b.getDocumentFrequency());
+			}
+		});
+
+		int n = 0;
+		for (int doc = nextMatch(cursors, from, deadline); doc >= 0
+				&& doc < to; doc = nextMatch(cursors, doc + 1, deadline)) {
+			if ((++n & (CHECK_INTERVAL - 1)) == 0 && deadline.isExpired()) {
+				return;
+			}
+			int length = segment.getLength(doc);
+			float score = 0;
+			for (int i = 0; i < wordCursors.length; i++) {
+				score += scorer.score(wordWeights[i],
+						wordCursors[i].frequency(), length);
+			}
+
+			boolean matched = true;
+			for (int i = 0; i < phraseCursors.length; i++) {
+				int occurrences = countPhrase(phraseCursors[i]);
+				if (occurrences == 0) {
+					matched = false;
+					break;
+				}
+				score += scorer.score(phraseWeights[i], occurrences, length);
+			}
+
+			if (matched) {
+				scores.add(doc, score);
+			}
+		}
+	}
+
+	/**
+	 * Finds the next site that every cursor visits. Each cursor in turn is
+	 * advanced to the latest candidate; a cursor that lands past it makes its
+	 * site the new candidate, until all cursors agree. Cursors that rarely
+	 * share a site can leapfrog for a long time, so the deadline is checked
+	 * along the way.
+	 * 
+	 * @param cursors
+	 * @param target
+	 *            smallest acceptable document id
+	 * @param deadline
+	 * @return document id, or -1 if there are no more common sites or the
+	 *         deadline has passed
+	 */
+	private static int nextMatch(WordCursor[] cursors, int target,
+			Deadline deadline) {
+		int agreed = 0;
+		for (int i = 0, n = 1;; i = (i + 1) % cursors.length, n++) {
+			if ((n & (CHECK_INTERVAL - 1)) == 0 && deadline.isExpired()) {
+				return -1;
+			}
+			if (!cursors[i].advance(target)) {
+				return -1;
+			}
+			if (cursors[i].doc() != target) {
+				target = cursors[i].doc();
+				agreed = 0;
+			}
+			agreed++;
+			if (agreed == cursors.length) {
+				return target;
+			}
+		}
+	}
+
+	/**
+	 * Counts the occurrences of a phrase in the site the cursors of its words
+	 * are on, by intersecting the position lists: the phrase occurs at p if
+	 * its j-th word occurs at p + j for every j.
+	 * 
+	 * @param phrase
+	 *            cursors of the phrase words, in order
+	 * @return number of occurrences
+	 */
+	private static int countPhrase(WordCursor[] phrase) {
+		int[][] positions = new int[phrase.length][];
+		for (int j = 0; j < phrase.length; j++) {
+			positions[j] = phrase[j].positions();
+		}
+
+		// next unchecked position of every word
+		int[] next = new int[phrase.length];
+		int count = 0;
+
+		candidates: for (int p : positions[0]) {
+			for (int j = 1; j < phrase.length; j++) {
+				int[] list = positions[j];
+				while (next[j] < list.length && list[next[j]] < p + j) {
+					next[j]++;
+				}
+				if (next[j] == list.length) {
+					return count;
+				}
+				if (list[next[j]] != p + j) {
+					continue candidates;
+				}
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the url of a document id.
+	 * 
+	 * @param doc
+	 * @return url, or null if the document is not in the snapshot
+	 */
+	public String getUrl(int doc) {
+		IndexSegment segment = getSegmentOf(doc);
+		return segment == null ? null : segment.getUrl(doc);
+	}
+
+	/**
+	 * Finds the segment holding a document.
+	 * 
+	 * @param doc
+	 * @return segment, or null if no segment holds the document
+	 */
+	public IndexSegment getSegmentOf(int doc) {
+		// segments are ordered by document id
+		int low = 0;
+		int high = segments.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			IndexSegment segment = segments[mid];
+			if (doc < segment.getFirstDocument()) {
+				high = mid - 1;
+			} else if (!segment.containsDocument(doc)) {
+				low = mid + 1;
+			} else {
+				return segment;
+			}
+		}
+		return null;
+	}
+
+}
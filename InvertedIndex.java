@@ -1,15 +1,42 @@
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.apache.log4j.Logger;
 
 /**
  * A threadsafe inverted index that maps words to sites to the occurrences of
- * that word in those sites.
+ * that word in those sites. Sites are stored by their {@link DocumentTable} id
+ * and occurrences are kept as compressed {@link PositionList}s.
+ * 
+ * Crawled sites are first gathered in a private buffer. The buffer is
+ * periodically committed as an immutable {@link IndexSegment}, and a new
+ * {@link IndexSnapshot} containing it is published. Searches only ever read a
+ * published snapshot, so they never lock and never wait for the crawler. A
+ * {@link SegmentMerger} compacts small segments into larger ones in the
+ * background.
+ * 
+ * The index can be saved to a binary file and opened from it at startup (see
+ * {@link #open(File)}), so the server can answer queries without crawling
+ * again. The static scores of the sites are saved with it, so a query ranks
+ * the same before and after a restart.
+ * 
+ * The statistics BM25 scoring needs are kept up to date as sites are added:
+ * each segment records the length of its sites and the document frequency of
+ * its words when it is built, and each snapshot the collection's size and
+ * total length (see {@link BM25}).
+ * 
+ * After a crawl, {@link #rankPages(LinkGraph)} computes the PageRank of the
+ * sites from the links found, and publishes it as their static score.
+ * 
+ * With {@link #setOffHeap(boolean)}, the postings of new segments are kept in
+ * direct buffers outside the Java heap, so the heap stays about the same size
+ * however large the index grows.
  * 
  * @author Steely Morneau
  * 
@@ -18,106 +45,383 @@ public class InvertedIndex {
 
 	private static Logger log = Logger.getLogger(InvertedIndex.class.getName());
 
-	private HashMap<String, HashMap<String, ArrayList<Integer>>> wordMap = new HashMap<String, HashMap<String, ArrayList<Integer>>>();
-	private Lock lock;
+	// commit once this many sites are buffered
+	private static final int COMMIT_DOCUMENTS = 16;
+
+	// also commit whatever is buffered this often, in milliseconds
+	private static final long COMMIT_INTERVAL = 1000;
+
+	private DocumentTable documents = new DocumentTable();
+
+	// sites indexed since the last commit, guarded by publisher
+	private HashMap<String, PostingList> buffer = new HashMap<String, PostingList>();
+	private ArrayList<String> bufferUrls = new ArrayList<String>();
+	private ArrayList<Integer> bufferLengths = new ArrayList<Integer>();
+	private int bufferFirstDoc = 0;
+	private final Object publisher = new Object();
+
+	// latest published snapshot, replaced by commits
+	private volatile IndexSnapshot snapshot = new IndexSnapshot(
+			new IndexSegment[0], 0);
+	private final Object committer = new Object();
+	private SegmentMerger merger;
+
+	// file the index is opened from and saved to, if any
+	private File indexFile = null;
+
+	// static scores opened with the index; its links were not saved
+	private float[] savedScores = null;
+
+	// whether new segments keep their postings off the heap
+	private volatile boolean offHeap = false;
+
 	private static InvertedIndex index = null;
 
 	private InvertedIndex() {
-		lock = new Lock();
 		log.info("Building InvertedIndex...");
+
+		merger = new SegmentMerger(this);
+		merger.start();
+
+		Timer timer = new Timer("InvertedIndex commit", true);
+		timer.schedule(new TimerTask() {
+			public void run() {
+				commit();
+			}
+		}, COMMIT_INTERVAL, COMMIT_INTERVAL);
+	}
+
+	/**
+	 * Chooses where the postings of segments committed or merged from now on
+	 * are stored. Segments opened from a file are always memory mapped.
+	 * 
+	 * @param offHeap
+	 *            if true, postings are kept in direct buffers off the heap
+	 */
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Checks whether new segments keep their postings off the heap.
+	 * 
+	 * @return true if postings are stored in direct buffers
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Gets the url of a document id.
+	 * 
+	 * @param doc
+	 * @return url
+	 */
+	public String getUrl(int doc) {
+		return snapshot.getUrl(doc);
 	}
 
 	/**
-	 * Inserts a word with the site in which it occurs and the position in that
-	 * site into the inverted index.
+	 * Inserts every word of a site into the inverted index. The position of a
+	 * word is its number in words. The positions of each word are gathered
+	 * without any locking, and then the site gets its document id and all of
+	 * its words are added to the buffer at once. The site can be searched
+	 * after the next {@link #commit()}.
 	 * 
-	 * @param word
-	 * @param fileName
-	 * @param position
+	 * @param url
+	 * @param words
+	 *            the words of the site, in order
+	 * @return document id of the site
 	 */
-	public void insert(String word, String fileName, int position) {
-		lock.acquireWriteLock();
-		log.debug("Adding " + word + " to index.");
-		if (wordMap.get(word) == null) {
-			wordMap.put(word, new HashMap<String, ArrayList<Integer>>());
+	public int indexDocument(String url, List<String> words) {
+		HashMap<String, PositionList> positions = new HashMap<String, PositionList>();
+		for (int i = 0; i < words.size(); i++) {
+			String word = words.get(i);
+			PositionList occurrences = positions.get(word);
+			if (occurrences == null) {
+				occurrences = new PositionList();
+				positions.put(word, occurrences);
+			}
+			occurrences.add(i);
 		}
-		HashMap<String, ArrayList<Integer>> fileMap = wordMap.get(word);
-		if (fileMap.get(fileName) == null) {
-			fileMap.put(fileName, new ArrayList<Integer>());
+
+		log.debug("Adding " + positions.size() + " words of " + url
+				+ " to index.");
+
+		int doc;
+		int buffered;
+
+		synchronized (publisher) {
+			doc = documents.getId(url);
+			if (doc != -1) {
+				log.debug(url + " is already in the index.");
+				return doc;
+			}
+			doc = documents.add(url);
+
+			if (bufferUrls.isEmpty()) {
+				bufferFirstDoc = doc;
+			}
+			bufferUrls.add(url);
+			bufferLengths.add(words.size());
+
+			for (Map.Entry<String, PositionList> entry : positions.entrySet()) {
+				PostingList postings = buffer.get(entry.getKey());
+				if (postings == null) {
+					postings = new PostingList();
+					buffer.put(entry.getKey(), postings);
+				}
+				postings.add(doc, entry.getValue());
+			}
+			buffered = bufferUrls.size();
 		}
-		ArrayList<Integer> occurrence = fileMap.get(fileName);
-		occurrence.add(position);
-		lock.releaseWriteLock();
+
+		if (buffered >= COMMIT_DOCUMENTS) {
+			commit();
+		}
+		return doc;
 	}
 
 	/**
-	 * Writes a file that contains each word with all the sites in which they
-	 * occur and their word numbers in the sites.
+	 * Turns the buffered sites into a new segment and publishes a snapshot
+	 * that includes it. Does nothing if no sites are buffered.
+	 */
+	public void commit() {
+		synchronized (committer) {
+			HashMap<String, PostingList> words;
+			ArrayList<String> urls;
+			ArrayList<Integer> lengths;
+			int firstDoc;
+
+			// take the buffer so the crawler can keep indexing meanwhile
+			synchronized (publisher) {
+				if (bufferUrls.isEmpty()) {
+					return;
+				}
+				words = buffer;
+				urls = bufferUrls;
+				lengths = bufferLengths;
+				firstDoc = bufferFirstDoc;
+				buffer = new HashMap<String, PostingList>();
+				bufferUrls = new ArrayList<String>();
+				bufferLengths = new ArrayList<Integer>();
+			}
+
+			int[] lengthArray = new int[lengths.size()];
+			for (int i = 0; i < lengthArray.length; i++) {
+				lengthArray[i] = lengths.get(i);
+			}
+
+			IndexSegment segment = IndexSegment.build(firstDoc, urls,
+					lengthArray, words, offHeap);
+			snapshot = snapshot.withSegment(segment);
+
+			log.info("Committed " + urls.size() + " sites; index generation "
+					+ snapshot.getGeneration() + " has "
+					+ snapshot.getSegmentCount() + " segments.");
+		}
+		merger.segmentsChanged();
+	}
+
+	/**
+	 * Publishes a snapshot in which a run of neighboring segments is replaced
+	 * by the segment they were merged into.
 	 * 
-	 * Only used for debugging in final version.
+	 * @param run
+	 *            the merged segments, in order
+	 * @param merged
+	 * @return false if the run is no longer in the latest snapshot
+	 */
+	public boolean replaceSegments(IndexSegment[] run, IndexSegment merged) {
+		synchronized (committer) {
+			IndexSnapshot current = snapshot;
+			for (int start = 0; start + run.length <= current
+					.getSegmentCount(); start++) {
+				if (current.getSegment(start) == run[0]) {
+					for (int i = 1; i < run.length; i++) {
+						if (current.getSegment(start + i) != run[i]) {
+							return false;
+						}
+					}
+					snapshot = current.withMerged(start, run.length, merged);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Ranks the indexed sites by PageRank over the links between them, and
+	 * publishes a snapshot with the ranks as static scores. Ranks are scaled
+	 * by the number of sites, so an average site scores log 2, and then
+	 * damped with a logarithm so a few heavily linked sites do not outweigh
+	 * relevance. Buffered sites are committed first, so they are ranked too.
 	 * 
+	 * The links between sites opened from the index file are not saved, so
+	 * those sites keep the scores saved with them rather than be ranked by
+	 * the links of this session alone.
+	 * 
+	 * @param graph
+	 *            links found by the crawler
+	 */
+	public void rankPages(LinkGraph graph) {
+		commit();
+		long start = System.currentTimeMillis();
+
+		String[] urls = graph.getUrls();
+		int[] ids = new int[urls.length];
+		for (int i = 0; i < urls.length; i++) {
+			ids[i] = documents.getId(urls[i]);
+		}
+
+		int count = documents.size();
+		int[] offsets = new int[count + 1];
+		int[] targets = graph.toAdjacency(ids, offsets);
+		float[] scores = new PageRank(offsets, targets).compute(Runtime
+				.getRuntime().availableProcessors());
+		for (int doc = 0; doc < count; doc++) {
+			scores[doc] = (float) Math.log(1 + (double) count * scores[doc]);
+		}
+		if (savedScores != null) {
+			System.arraycopy(savedScores, 0, scores, 0,
+					Math.min(savedScores.length, count));
+		}
+
+		synchronized (committer) {
+			snapshot = snapshot.withStaticScores(scores);
+		}
+		log.info("Ranked " + count + " sites with " + targets.length
+				+ " links in " + (System.currentTimeMillis() - start)
+				+ " ms.");
+	}
+
+	/**
+	 * Sets the file the index is saved to, and loads the index saved in it if
+	 * the file exists. The saved postings are memory mapped rather than read,
+	 * so this is fast even for a large index, and the saved static scores are
+	 * published with them. Must be called before any site is indexed.
+	 * 
+	 * @param file
 	 * @throws IOException
+	 *             if the file exists but cannot be loaded
 	 */
-	public void printIndex() throws IOException {
-		lock.acquireReadLock();
-		FileWriter stream = new FileWriter("invertedindex.txt");
-		PrintWriter out = new PrintWriter(stream);
-		for (String word : wordMap.keySet()) {
-			out.println(word);
-			HashMap<String, ArrayList<Integer>> map = wordMap.get(word);
-			for (String fileName : map.keySet()) {
-				out.print("\"" + fileName + "\"");
-				ArrayList<Integer> occurrences = map.get(fileName);
-				for (Integer i : occurrences) {
-					out.print(", " + i);
+	public void open(File file) throws IOException {
+		synchronized (committer) {
+			indexFile = file;
+			if (!file.exists()) {
+				log.info(file + " does not exist yet; starting an empty index.");
+				return;
+			}
+
+			long start = System.currentTimeMillis();
+			IndexSegment segment = IndexSegment.open(file);
+
+			synchronized (publisher) {
+				if (documents.size() != 0 || segment.getFirstDocument() != 0) {
+					throw new IllegalStateException(
+							"The index must be opened before crawling.");
+				}
+				for (int doc = 0; doc < segment.getDocumentCount(); doc++) {
+					documents.add(segment.getUrl(doc));
 				}
-				out.println();
 			}
-			out.println();
+			snapshot = snapshot.withSegment(segment);
+			savedScores = segment.getStaticScores();
+			if (savedScores != null) {
+				snapshot = snapshot.withStaticScores(savedScores);
+			}
+
+			log.info("Opened " + file + " with " + segment.getDocumentCount()
+					+ " sites and " + segment.size() + " words in "
+					+ (System.currentTimeMillis() - start) + " ms.");
 		}
-		out.println();
-		out.println();
-		out.close();
-		lock.releaseReadLock();
 	}
 
 	/**
-	 * Gets the HashMap's key set of the inverted index.
+	 * Commits any buffered sites and saves the whole index, with the static
+	 * scores of its sites, to the file given to {@link #open(File)}. The index
+	 * is written to a temporary file first, so a failed save never leaves a
+	 * broken index file behind.
 	 * 
-	 * @return keySet
+	 * @throws IOException
 	 */
-	public Set<String> getMapsWords() {
-		lock.acquireReadLock();
-		Set<String> keys = wordMap.keySet();
-		lock.releaseReadLock();
-		return keys;
+	public void save() throws IOException {
+		if (indexFile == null) {
+			throw new IOException("No index file was opened.");
+		}
+
+		commit();
+		IndexSnapshot current = snapshot;
+
+		long start = System.currentTimeMillis();
+
+		IndexSegment all;
+		if (current.getSegmentCount() == 1) {
+			all = current.getSegment(0);
+		} else if (current.getSegmentCount() == 0) {
+			all = IndexSegment.build(0, new ArrayList<String>(), new int[0],
+					new HashMap<String, PostingList>(), false);
+		} else {
+			IndexSegment[] segments = new IndexSegment[current
+					.getSegmentCount()];
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = current.getSegment(i);
+			}
+			all = IndexSegment.merge(segments, offHeap);
+		}
+
+		File temp = new File(indexFile.getPath() + ".tmp");
+		all.write(temp, current.getStaticScores());
+		if (!temp.renameTo(indexFile)) {
+			indexFile.delete();
+			if (!temp.renameTo(indexFile)) {
+				throw new IOException("Unable to replace " + indexFile);
+			}
+		}
+
+		log.info("Saved " + all.getDocumentCount() + " sites to " + indexFile
+				+ " in " + (System.currentTimeMillis() - start) + " ms.");
 	}
 
 	/**
-	 * Gets a set of URLs for a given word in the index.
+	 * Gets the latest published snapshot of the index.
 	 * 
-	 * @param word
-	 * @return
+	 * @return snapshot
 	 */
-	public Set<String> getWordsUrls(String word) {
-		lock.acquireReadLock();
-		Set<String> sites = wordMap.get(word).keySet();
-		lock.releaseReadLock();
-		return sites;
+	public IndexSnapshot getSnapshot() {
+		return snapshot;
 	}
 
 	/**
-	 * Get a url's rank for a word in the index.
+	 * Writes a file that contains each word with all the sites in which they
+	 * occur and their word numbers in the sites.
 	 * 
-	 * @param word
-	 * @param fileName
-	 * @return
+	 * Only used for debugging in final version.
+	 * 
+	 * @throws IOException
+	 */
+	public void printIndex() throws IOException {
+		export(new File("invertedindex.txt"), false, false);
+	}
+
+	/**
+	 * Streams the latest snapshot to a file without blocking the crawler or
+	 * searches. See {@link IndexExporter} for the formats.
+	 * 
+	 * @param file
+	 * @param json
+	 *            if true, writes JSON lines instead of plain text
+	 * @param gzip
+	 *            if true, the file is gzip compressed
+	 * @throws IOException
 	 */
-	public Integer getSitesRankforWord(String word, String fileName) {
-		lock.acquireReadLock();
-		Integer rank = wordMap.get(word).get(fileName).size();
-		lock.releaseReadLock();
-		return rank;
+	public void export(File file, boolean json, boolean gzip)
+			throws IOException {
+		long start = System.currentTimeMillis();
+		new IndexExporter(snapshot, json).export(file, gzip);
+		log.info("Exported index to " + file + " in "
+				+ (System.currentTimeMillis() - start) + " ms.");
 	}
 
 	/**
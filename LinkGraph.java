@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * A threadsafe record of the links found while crawling. Every url is given a
+ * number the first time it is seen, and each link is kept as a pair of numbers
+ * in two growing int arrays, so the graph takes a few bytes per link however
+ * long the urls are. Links are recorded whether or not their target is ever
+ * crawled; {@link #toAdjacency(int[], int[])} keeps only the links between
+ * sites that made it into the index.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class LinkGraph {
+
+	private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private ArrayList<String> urls = new ArrayList<String>();
+
+	// link i goes from sources[i] to targets[i]
+	private int[] sources = new int[1024];
+	private int[] targets = new int[1024];
+	private int links = 0;
+
+	private static LinkGraph graph = null;
+
+	/**
+	 * Records the links of a site.
+	 * 
+	 * @param from
+	 *            url of the site
+	 * @param to
+	 *            urls it links to, without duplicates
+	 */
+	public synchronized void addLinks(String from, Collection<String> to) {
+		int source = getId(from);
+		for (String url : to) {
+			int target = getId(url);
+			if (target == source) {
+				continue;
+			}
+			if (links == sources.length) {
+				sources = Arrays.copyOf(sources, links * 2);
+				targets = Arrays.copyOf(targets, links * 2);
+			}
+			sources[links] = source;
+			targets[links] = target;
+			links++;
+		}
+	}
+
+	/**
+	 * Gets the number of a url, numbering it if it is new.
+	 * 
+	 * @param url
+	 * @return number of the url
+	 */
+	private int getId(String url) {
+		Integer id = ids.get(url);
+		if (id == null) {
+			id = urls.size();
+			ids.put(url, id);
+			urls.add(url);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the number of links recorded.
+	 * 
+	 * @return link count
+	 */
+	public synchronized int size() {
+		return links;
+	}
+
+	/**
+	 * Gets the urls seen so far, in the order they were numbered.
+	 * 
+	 * @return urls
+	 */
+	public synchronized String[] getUrls() {
+		return urls.toArray(new String[urls.size()]);
+	}
+
+	/**
+	 * Builds the adjacency of the documents in compressed sparse row form:
+	 * the documents that document d links to are targets[offsets[d]] to
+	 * targets[offsets[d + 1] - 1], where targets is the returned array. Links
+	 * from or to urls that are not documents are dropped.
+	 * 
+	 * @param documents
+	 *            document id of each url number, or -1 if the url was not
+	 *            indexed; numbers past the end of the array count as -1
+	 * @param offsets
+	 *            filled with the start of each document's links, one longer
+	 *            than the number of documents
+	 * @return targets
+	 */
+	public synchronized int[] toAdjacency(int[] documents, int[] offsets) {
+		int documentCount = offsets.length - 1;
+		Arrays.fill(offsets, 0);
+
+		// count the links of every document, then turn counts into offsets
+		for (int i = 0; i < links; i++) {
+			int from = document(documents, sources[i]);
+			if (from >= 0 && document(documents, targets[i]) >= 0) {
+				offsets[from + 1]++;
+			}
+		}
+		for (int d = 0; d < documentCount; d++) {
+			offsets[d + 1] += offsets[d];
+		}
+
+		int[] adjacent = new int[offsets[documentCount]];
+		int[] next = Arrays.copyOf(offsets, documentCount);
+		for (int i = 0; i < links; i++) {
+			int from = document(documents, sources[i]);
+			int to = document(documents, targets[i]);
+			if (from >= 0 && to >= 0) {
+				adjacent[next[from]++] = to;
+			}
+		}
+		return adjacent;
+	}
+
+	/**
+	 * Looks up the document id of a url number.
+	 * 
+	 * @param documents
+	 * @param id
+	 * @return document id, or -1
+	 */
+	private static int document(int[] documents, int id) {
+		return id < documents.length ? documents[id] : -1;
+	}
+
+	/**
+	 * Uses a singleton pattern to get an instance of the LinkGraph
+	 * 
+	 * @return graph
+	 */
+	public static LinkGraph getInstance() {
+		if (graph == null) {
+			synchronized (LinkGraph.class) {
+				if (graph == null) {
+					graph = new LinkGraph();
+				}
+			}
+		}
+		return graph;
+	}
+
+}
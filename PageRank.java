@@ -0,0 +1,228 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Computes the PageRank of every document from the link graph, by power
+ * iteration on a few threads. The links are first turned around into
+ * incoming lists, so each thread pulls the rank flowing into its own range of
+ * documents and no two threads ever write the same entry. Rank held by sites
+ * without links is spread evenly over all sites, and the iteration stops once
+ * the ranks change by less than {@link #TOLERANCE} in total.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class PageRank {
+
+	private static Logger log = Logger.getLogger(PageRank.class.getName());
+
+	// probability of following a link rather than jumping to a random site
+	private static final double DAMPING = 0.85;
+
+	// total change in rank below which the ranks count as converged
+	private static final double TOLERANCE = 1e-6;
+
+	private static final int MAX_ITERATIONS = 100;
+
+	// fewest documents worth a thread of their own
+	private static final int MIN_CHUNK = 16384;
+
+	private final int n;
+	private final int[] outDegrees;
+
+	// documents linking to d are sources[inOffsets[d]] up to inOffsets[d + 1]
+	private final int[] inOffsets;
+	private final int[] sources;
+
+	private double[] ranks;
+	private double[] shares;
+
+	/**
+	 * Prepares to rank a graph given in compressed sparse row form, as built
+	 * by {@link LinkGraph#toAdjacency(int[], int[])}.
+	 * 
+	 * @param offsets
+	 *            start of each document's links, one longer than the number
+	 *            of documents
+	 * @param targets
+	 *            documents linked to
+	 */
+	public PageRank(int[] offsets, int[] targets) {
+		n = offsets.length - 1;
+		outDegrees = new int[n];
+		inOffsets = new int[n + 1];
+		for (int d = 0; d < n; d++) {
+			outDegrees[d] = offsets[d + 1] - offsets[d];
+			for (int i = offsets[d]; i < offsets[d + 1]; i++) {
+				inOffsets[targets[i] + 1]++;
+			}
+		}
+		for (int d = 0; d < n; d++) {
+			inOffsets[d + 1] += inOffsets[d];
+		}
+
+		// walking the sources in order keeps every incoming list sorted
+		sources = new int[targets.length];
+		int[] next = new int[n];
+		System.arraycopy(inOffsets, 0, next, 0, n);
+		for (int d = 0; d < n; d++) {
+			for (int i = offsets[d]; i < offsets[d + 1]; i++) {
+				sources[next[targets[i]]++] = d;
+			}
+		}
+	}
+
+	/**
+	 * Runs the power iteration.
+	 * 
+	 * @param threads
+	 *            most threads to use
+	 * @return rank of every document, summing to 1
+	 */
+	public float[] compute(int threads) {
+		float[] result = new float[n];
+		if (n == 0) {
+			return result;
+		}
+
+		ranks = new double[n];
+		shares = new double[n];
+		Arrays.fill(ranks, 1.0 / n);
+
+		int chunks = Math.max(1, Math.min(threads, n / MIN_CHUNK));
+		ExecutorService pool = Executors.newFixedThreadPool(chunks);
+		try {
+			int iteration = 0;
+			double change = Double.MAX_VALUE;
+			while (iteration < MAX_ITERATIONS && change > TOLERANCE) {
+				// rank each site passes along each link, and rank of dead ends
+				double dangling = 0;
+				for (double part : run(pool, chunks, new Phase() {
+					public double run(int from, int to) {
+						return share(from, to);
+					}
+				})) {
+					dangling += part;
+				}
+
+				final double base = (1 - DAMPING) / n + DAMPING * dangling / n;
+				change = 0;
+				for (double part : run(pool, chunks, new Phase() {
+					public double run(int from, int to) {
+						return gather(from, to, base);
+					}
+				})) {
+					change += part;
+				}
+				iteration++;
+			}
+			log.info("Ranked " + n + " sites with " + sources.length
+					+ " links in " + iteration + " iterations on " + chunks
+					+ " threads.");
+		} finally {
+			pool.shutdown();
+		}
+
+		for (int d = 0; d < n; d++) {
+			result[d] = (float) ranks[d];
+		}
+		return result;
+	}
+
+	/**
+	 * Work done on one range of documents in one step of an iteration.
+	 */
+	private interface Phase {
+		public double run(int from, int to);
+	}
+
+	/**
+	 * Runs a phase on every chunk of documents and waits for all of them.
+	 * 
+	 * @param pool
+	 * @param chunks
+	 *            number of ranges to split the documents into
+	 * @param phase
+	 * @return result of every chunk
+	 */
+	private List<Double> run(ExecutorService pool, int chunks,
+			final Phase phase) {
+		ArrayList<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+		for (int c = 0; c < chunks; c++) {
+			final int from = (int) ((long) n * c / chunks);
+			final int to = (int) ((long) n * (c + 1) / chunks);
+			tasks.add(new Callable<Double>() {
+				public Double call() {
+					return phase.run(from, to);
+				}
+			});
+		}
+
+		ArrayList<Double> results = new ArrayList<Double>(chunks);
+		try {
+			for (Future<Double> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while ranking.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Works out the rank each document in a range passes along each of its
+	 * links.
+	 * 
+	 * @param from
+	 * @param to
+	 * @return total rank of the documents in the range that have no links
+	 */
+	private double share(int from, int to) {
+		double dangling = 0;
+		for (int d = from; d < to; d++) {
+			if (outDegrees[d] == 0) {
+				dangling += ranks[d];
+				shares[d] = 0;
+			} else {
+				shares[d] = ranks[d] / outDegrees[d];
+			}
+		}
+		return dangling;
+	}
+
+	/**
+	 * Computes the new rank of each document in a range from the shares of
+	 * the documents linking to it.
+	 * 
+	 * @param from
+	 * @param to
+	 * @param base
+	 *            rank every document gets regardless of its links
+	 * @return total change in rank over the range
+	 */
+	private double gather(int from, int to, double base) {
+		double change = 0;
+		for (int d = from; d < to; d++) {
+			double sum = 0;
+			for (int i = inOffsets[d]; i < inOffsets[d + 1]; i++) {
+				sum += shares[sources[i]];
+			}
+			double rank = base + DAMPING * sum;
+			change += Math.abs(rank - ranks[d]);
+			ranks[d] = rank;
+		}
+		return change;
+	}
+
+}
@@ -0,0 +1,52 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes a run of variable-byte encoded position gaps one at a time without
+ * boxing them. Used for both the positions of a {@link PositionList} and the
+ * positions stored in an {@link IndexSegment}.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class PositionIterator {
+
+	private ByteBuffer buffer;
+	private int[] offset = new int[1];
+	private int remaining;
+	private int position;
+
+	/**
+	 * Makes an iterator over count positions starting at offset in buffer.
+	 * 
+	 * @param buffer
+	 * @param offset
+	 * @param count
+	 */
+	public PositionIterator(ByteBuffer buffer, int offset, int count) {
+		this.buffer = buffer;
+		this.offset[0] = offset;
+		this.remaining = count;
+		this.position = 0;
+	}
+
+	/**
+	 * Checks whether there are more positions to decode.
+	 * 
+	 * @return true if there are more positions
+	 */
+	public boolean hasNext() {
+		return remaining > 0;
+	}
+
+	/**
+	 * Decodes the next position.
+	 * 
+	 * @return position
+	 */
+	public int next() {
+		position += VByte.read(buffer, offset);
+		remaining--;
+		return position;
+	}
+
+}
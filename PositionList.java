@@ -0,0 +1,93 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A compressed list of the positions of a word in one site. Positions are added
+ * in increasing order and stored as variable-byte encoded gaps in a single
+ * byte array, instead of one boxed Integer per occurrence.
+ * 
+ * Not threadsafe; the index only changes it while it is being buffered.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class PositionList {
+
+	private byte[] bytes;
+	private int length;
+	private int size;
+	private int last;
+
+	/**
+	 * Makes an empty position list.
+	 */
+	public PositionList() {
+		bytes = new byte[4];
+		length = 0;
+		size = 0;
+		last = 0;
+	}
+
+	/**
+	 * Adds a position to the end of the list.
+	 * 
+	 * @param position
+	 *            must not be smaller than the last position added
+	 */
+	public void add(int position) {
+		if (position < last) {
+			throw new IllegalArgumentException("Position " + position
+					+ " added after " + last);
+		}
+
+		int gap = position - last;
+		int needed = length + VByte.length(gap);
+		if (needed > bytes.length) {
+			byte[] grown = new byte[Math.max(needed, bytes.length * 2)];
+			System.arraycopy(bytes, 0, grown, 0, length);
+			bytes = grown;
+		}
+
+		length = VByte.write(gap, bytes, length);
+		last = position;
+		size++;
+	}
+
+	/**
+	 * Gets the number of positions in the list.
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of bytes used by the encoded positions.
+	 * 
+	 * @return encoded length
+	 */
+	public int byteLength() {
+		return length;
+	}
+
+	/**
+	 * Gets an iterator that decodes the positions in order.
+	 * 
+	 * @return iterator
+	 */
+	public PositionIterator iterator() {
+		return new PositionIterator(ByteBuffer.wrap(bytes, 0, length), 0, size);
+	}
+
+	/**
+	 * Copies the encoded positions to the end of a byte stream. The bytes can
+	 * be decoded again with a {@link PositionIterator}.
+	 * 
+	 * @param out
+	 */
+	public void writeTo(ByteArrayOutputStream out) {
+		out.write(bytes, 0, length);
+	}
+
+}
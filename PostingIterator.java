@@ -0,0 +1,172 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the posting list of one word in an {@link IndexSegment}, one site at
+ * a time. Each entry is stored as variable-byte integers: the gap from the
+ * previous document id, the number of occurrences, the length in bytes of the
+ * encoded positions, and then the position gaps themselves. Storing the length
+ * lets an entry be skipped without decoding its positions.
+ * 
+ * Lists longer than SKIP_INTERVAL entries start with a table of skip pointers,
+ * one for every SKIP_INTERVAL entries: the byte length of the table, and then
+ * for each pointer the last document id before its block and the offset of the
+ * block in the entries, both as gaps from the previous pointer. The pointers
+ * let {@link #advance(int)} jump over whole blocks, so intersecting a short
+ * list with a long one does not decode all of the long one. See
+ * {@link PostingWriter} for the encoder.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class PostingIterator {
+
+	// entries per block between skip pointers
+	public static final int SKIP_INTERVAL = 128;
+
+	private ByteBuffer buffer;
+	private int[] offset = new int[1];
+	private int count;
+	private int remaining;
+
+	private int doc;
+	private int frequency;
+	private int positionsOffset;
+	private int positionsLength;
+
+	// start of the entries, and the read state of the skip pointers
+	private int entries;
+	private int skipCount;
+	private int nextSkip = 0;
+	private boolean skipLoaded = false;
+	private int[] skipRead = new int[1];
+	private int skipDoc = 0;
+	private int skipOffset = 0;
+
+	/**
+	 * Makes an iterator over count entries starting at offset in buffer.
+	 * 
+	 * @param buffer
+	 * @param offset
+	 * @param count
+	 */
+	public PostingIterator(ByteBuffer buffer, int offset, int count) {
+		this.buffer = buffer;
+		this.count = count;
+		this.remaining = count;
+		this.doc = 0;
+
+		this.offset[0] = offset;
+		skipCount = count > 0 ? (count - 1) / SKIP_INTERVAL : 0;
+		if (skipCount > 0) {
+			int length = VByte.read(buffer, this.offset);
+			skipRead[0] = this.offset[0];
+			this.offset[0] += length;
+		}
+		entries = this.offset[0];
+	}
+
+	/**
+	 * Moves to the next entry.
+	 * 
+	 * @return false if there are no more entries
+	 */
+	public boolean next() {
+		if (remaining == 0) {
+			return false;
+		}
+		remaining--;
+
+		doc += VByte.read(buffer, offset);
+		frequency = VByte.read(buffer, offset);
+		positionsLength = VByte.read(buffer, offset);
+		positionsOffset = offset[0];
+		offset[0] += positionsLength;
+		return true;
+	}
+
+	/**
+	 * Moves forward to the first entry whose document id is at least target,
+	 * using the skip pointers to pass over blocks that end before target. Does
+	 * not move if the current entry already qualifies.
+	 * 
+	 * @param target
+	 *            document id
+	 * @return false if no entry at or after the current one reaches target
+	 */
+	public boolean advance(int target) {
+		if (remaining < count && doc >= target) {
+			return true;
+		}
+
+		while (nextSkip < skipCount) {
+			if (!skipLoaded) {
+				skipDoc += VByte.read(buffer, skipRead);
+				skipOffset += VByte.read(buffer, skipRead);
+				skipLoaded = true;
+			}
+			if (skipDoc >= target) {
+				break;
+			}
+
+			// every entry before the block is below target
+			int start = (nextSkip + 1) * SKIP_INTERVAL;
+			if (start > count - remaining) {
+				doc = skipDoc;
+				offset[0] = entries + skipOffset;
+				remaining = count - start;
+			}
+			nextSkip++;
+			skipLoaded = false;
+		}
+
+		while (next()) {
+			if (doc >= target) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the document id of the current entry.
+	 * 
+	 * @return document id
+	 */
+	public int doc() {
+		return doc;
+	}
+
+	/**
+	 * Gets the number of occurrences of the word in the current entry.
+	 * 
+	 * @return frequency
+	 */
+	public int frequency() {
+		return frequency;
+	}
+
+	/**
+	 * Gets an iterator over the positions of the word in the current entry.
+	 * 
+	 * @return positions
+	 */
+	public PositionIterator positions() {
+		return new PositionIterator(buffer, positionsOffset, frequency);
+	}
+
+	/**
+	 * Writes the frequency and encoded positions of the current entry to out,
+	 * without decoding the positions. The document gap is left to the caller.
+	 * 
+	 * @param out
+	 */
+	public void copyTo(ByteArrayOutputStream out) {
+		VByte.write(frequency, out);
+		VByte.write(positionsLength, out);
+		for (int i = 0; i < positionsLength; i++) {
+			out.write(buffer.get(positionsOffset + i));
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * The documents containing one word, kept sorted by document id, with the
+ * positions of the word in each of them. Documents and their position lists
+ * are stored in parallel arrays.
+ * 
+ * Used to buffer sites in {@link InvertedIndex} until they are committed to
+ * an {@link IndexSegment}. Not threadsafe on its own.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class PostingList {
+
+	private int[] docs;
+	private PositionList[] positions;
+	private int size;
+
+	/**
+	 * Makes an empty posting list.
+	 */
+	public PostingList() {
+		docs = new int[2];
+		positions = new PositionList[2];
+		size = 0;
+	}
+
+	/**
+	 * Adds a document and the positions of the word in it to the end of the
+	 * list.
+	 * 
+	 * @param doc
+	 *            must be larger than every document already in the list
+	 * @param occurrences
+	 *            positions of the word in doc
+	 */
+	public void add(int doc, PositionList occurrences) {
+		if (size > 0 && doc <= docs[size - 1]) {
+			throw new IllegalArgumentException("Document " + doc
+					+ " added after " + docs[size - 1]);
+		}
+
+		if (size == docs.length) {
+			int[] grownDocs = new int[size * 2];
+			PositionList[] grownPositions = new PositionList[size * 2];
+			System.arraycopy(docs, 0, grownDocs, 0, size);
+			System.arraycopy(positions, 0, grownPositions, 0, size);
+			docs = grownDocs;
+			positions = grownPositions;
+		}
+
+		docs[size] = doc;
+		positions[size] = occurrences;
+		size++;
+	}
+
+	/**
+	 * Gets the number of documents in the list.
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the document id of an entry.
+	 * 
+	 * @param i
+	 * @return document id
+	 */
+	public int getDocument(int i) {
+		return docs[i];
+	}
+
+	/**
+	 * Gets the positions of an entry.
+	 * 
+	 * @param i
+	 * @return positions
+	 */
+	public PositionList getPositions(int i) {
+		return positions[i];
+	}
+
+}
@@ -0,0 +1,114 @@
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes the posting list of one word in the format read by
+ * {@link PostingIterator}. Entries are added in increasing document order, and
+ * every {@link PostingIterator#SKIP_INTERVAL} entries a skip pointer is
+ * recorded. When the list is finished, the skip pointers are written in front
+ * of the entries. A writer can be reused for the next word after
+ * {@link #writeTo(ByteArrayOutputStream)}.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class PostingWriter {
+
+	private ByteArrayOutputStream entries = new ByteArrayOutputStream();
+	private ByteArrayOutputStream skips = new ByteArrayOutputStream();
+
+	private int count = 0;
+	private int last = 0;
+	private int maxFrequency = 0;
+
+	// document and entry offset of the last skip pointer
+	private int skipDoc = 0;
+	private int skipOffset = 0;
+
+	/**
+	 * Adds an entry for a site.
+	 * 
+	 * @param doc
+	 *            document id, larger than any added before
+	 * @param positions
+	 *            positions of the word in the site
+	 */
+	public void add(int doc, PositionList positions) {
+		startEntry(doc, positions.size());
+		VByte.write(positions.size(), entries);
+		VByte.write(positions.byteLength(), entries);
+		positions.writeTo(entries);
+	}
+
+	/**
+	 * Adds the current entry of another posting list, copying its encoded
+	 * positions without decoding them. Used to merge segments.
+	 * 
+	 * @param postings
+	 *            posting list positioned on the entry to copy
+	 */
+	public void add(PostingIterator postings) {
+		startEntry(postings.doc(), postings.frequency());
+		postings.copyTo(entries);
+	}
+
+	/**
+	 * Writes the document gap of a new entry, after a skip pointer if the
+	 * entry starts a new block.
+	 * 
+	 * @param doc
+	 * @param frequency
+	 *            number of occurrences in the entry
+	 */
+	private void startEntry(int doc, int frequency) {
+		maxFrequency = Math.max(maxFrequency, frequency);
+		if (count > 0 && count % PostingIterator.SKIP_INTERVAL == 0) {
+			VByte.write(last - skipDoc, skips);
+			VByte.write(entries.size() - skipOffset, skips);
+			skipDoc = last;
+			skipOffset = entries.size();
+		}
+		VByte.write(doc - last, entries);
+		last = doc;
+		count++;
+	}
+
+	/**
+	 * Gets the number of entries added so far.
+	 * 
+	 * @return document frequency of the word
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Gets the largest number of occurrences in any entry added so far.
+	 * 
+	 * @return maximum frequency
+	 */
+	public int getMaxFrequency() {
+		return maxFrequency;
+	}
+
+	/**
+	 * Writes the finished posting list to out and clears the writer.
+	 * 
+	 * @param out
+	 */
+	public void writeTo(ByteArrayOutputStream out) {
+		if (skips.size() > 0) {
+			VByte.write(skips.size(), out);
+			out.write(skips.toByteArray(), 0, skips.size());
+		}
+		out.write(entries.toByteArray(), 0, entries.size());
+
+		entries.reset();
+		skips.reset();
+		count = 0;
+		last = 0;
+		maxFrequency = 0;
+		skipDoc = 0;
+		skipOffset = 0;
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+ * The merged posting list of every word in a segment that starts with a
+ * prefix: each site containing any of the words, once, with the total number
+ * of occurrences of those words in it. Positions are not kept. Built by
+ * {@link IndexSegment#getPrefixPostings(String, Deadline)} and cached there, so a short
+ * prefix that matches thousands of words is only expanded once per segment.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class PrefixPostings {
+
+	// postings merged between two looks at the clock, a power of two
+	private static final int CHECK_INTERVAL = 256;
+
+	private final int[] docs;
+	private final int[] frequencies;
+	private final int maxFrequency;
+
+	/**
+	 * Makes a merged list.
+	 * 
+	 * @param docs
+	 *            document ids, in increasing order
+	 * @param frequencies
+	 *            frequency of each site
+	 * @param maxFrequency
+	 *            largest of the frequencies
+	 */
+	private PrefixPostings(int[] docs, int[] frequencies, int maxFrequency) {
+		this.docs = docs;
+		this.frequencies = frequencies;
+		this.maxFrequency = maxFrequency;
+	}
+
+	/**
+	 * Merges the posting lists of a range of words in a segment. A short
+	 * prefix can cover most of the postings of a segment, so the merge gives
+	 * up once the deadline passes rather than return a partial list that could
+	 * be cached.
+	 * 
+	 * @param segment
+	 * @param start
+	 *            number of the first word
+	 * @param end
+	 *            number just past the last word
+	 * @param deadline
+	 * @return merged postings, or null if the deadline passed first
+	 */
+	public static PrefixPostings merge(IndexSegment segment, int start,
+			int end, Deadline deadline) {
+		// document ids of a segment are dense, so count in a plain array
+		int first = segment.getFirstDocument();
+		int[] counts = new int[segment.getDocumentCount()];
+		int size = 0;
+		int n = 0;
+		for (int i = start; i < end; i++) {
+			PostingIterator postings = segment.postings(i);
+			while (postings.next()) {
+				if ((++n & (CHECK_INTERVAL - 1)) == 0 && deadline.isExpired()) {
+					return null;
+				}
+				if (counts[postings.doc() - first] == 0) {
+					size++;
+				}
+				counts[postings.doc() - first] += postings.frequency();
+			}
+		}
+
+		int[] docs = new int[size];
+		int[] frequencies = new int[size];
+		int max = 0;
+		n = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				docs[n] = first + i;
+				frequencies[n] = counts[i];
+				max = Math.max(max, counts[i]);
+				n++;
+			}
+		}
+		return new PrefixPostings(docs, frequencies, max);
+	}
+
+	/**
+	 * Gets the number of sites in the list.
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return docs.length;
+	}
+
+	/**
+	 * Gets the document id of the i-th site.
+	 * 
+	 * @param i
+	 * @return document id
+	 */
+	public int getDocument(int i) {
+		return docs[i];
+	}
+
+	/**
+	 * Gets the number of occurrences of the words in the i-th site.
+	 * 
+	 * @param i
+	 * @return frequency
+	 */
+	public int getFrequency(int i) {
+		return frequencies[i];
+	}
+
+	/**
+	 * Gets the largest frequency of any site in the list.
+	 * 
+	 * @return maximum frequency
+	 */
+	public int getMaxFrequency() {
+		return maxFrequency;
+	}
+
+	/**
+	 * Finds the first site at or after target, searching forward from a known
+	 * index by galloping and then binary search.
+	 * 
+	 * @param from
+	 *            index to search from
+	 * @param target
+	 *            document id
+	 * @return index of the site, or {@link #size()} if there is none
+	 */
+	public int advance(int from, int target) {
+		int low = from;
+		int step = 1;
+		int high = from;
+		while (high < docs.length && docs[high] < target) {
+			low = high + 1;
+			high += step;
+			step *= 2;
+		}
+		high = Math.min(high, docs.length);
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (docs[mid] < target) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+}
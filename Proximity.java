@@ -0,0 +1,140 @@
+import java.util.Map;
+
+/**
+ * Scores how close together the words of a query occur in a site. The
+ * positions of every query word are read from the postings, and the smallest
+ * window of positions that holds at least one occurrence of each word is found
+ * by walking the sorted position lists together. The closer the words, the
+ * larger the boost: words right next to each other earn the full
+ * {@link #WEIGHT}.
+ * 
+ * Reading positions is costly, so proximity is only worked out for the few
+ * candidates a {@link Reranker} is given, which must be visited in document
+ * order.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class Proximity {
+
+	// boost of a site in which the query words are adjacent
+	private static final float WEIGHT = 1.0f;
+
+	private final IndexSnapshot snapshot;
+	private final String[] words;
+	private final boolean[] partial;
+
+	// cursors of the segment holding the last site scored
+	private IndexSegment segment = null;
+	private final WordCursor[] cursors;
+	private final int[][] positions;
+
+	/**
+	 * Prepares to score the proximity of a query's words.
+	 * 
+	 * @param snapshot
+	 *            snapshot the sites are in
+	 * @param terms
+	 *            every distinct word of the query, and whether it also matches
+	 *            the words starting with it
+	 */
+	public Proximity(IndexSnapshot snapshot, Map<String, Boolean> terms) {
+		this.snapshot = snapshot;
+		words = new String[terms.size()];
+		partial = new boolean[terms.size()];
+		int t = 0;
+		for (Map.Entry<String, Boolean> term : terms.entrySet()) {
+			words[t] = term.getKey();
+			partial[t] = term.getValue();
+			t++;
+		}
+		cursors = new WordCursor[words.length];
+		positions = new int[words.length][];
+	}
+
+	/**
+	 * Works out the proximity boost of a site. Sites must be given in
+	 * increasing document order. Query words whose positions are not at hand,
+	 * short prefixes read through merged postings, are left out of the window,
+	 * and a site missing any other query word gets no boost.
+	 * 
+	 * @param doc
+	 *            document id
+	 * @param deadline
+	 *            bounds the merging of a prefix's postings, which may have
+	 *            been evicted from the segment's cache since the first phase
+	 * @return boost, between 0 and {@link #WEIGHT}, or 0 once the deadline
+	 *         has passed
+	 */
+	public float boost(int doc, Deadline deadline) {
+		if (words.length < 2) {
+			return 0;
+		}
+
+		if (segment == null || !segment.containsDocument(doc)) {
+			segment = snapshot.getSegmentOf(doc);
+			for (int t = 0; t < words.length; t++) {
+				cursors[t] = new WordCursor(segment, words[t], partial[t],
+						deadline);
+			}
+		}
+
+		// a prefix that could not be merged in time leaves its cursor empty
+		if (deadline.wasReached()) {
+			return 0;
+		}
+
+		int count = 0;
+		for (WordCursor cursor : cursors) {
+			if (!cursor.hasPositions()) {
+				continue;
+			}
+			if (!cursor.advance(doc) || cursor.doc() != doc) {
+				return 0;
+			}
+			positions[count++] = cursor.positions();
+		}
+		if (count < 2) {
+			return 0;
+		}
+
+		// the words of a partial query can share a position
+		int span = minimalSpan(positions, count);
+		return WEIGHT * Math.min(1f, (float) (count - 1) / Math.max(1, span));
+	}
+
+	/**
+	 * Finds the smallest window holding a position from every list. The lists
+	 * are walked together: the window always spans the current position of
+	 * each list, and the list at the window's start is the one moved forward,
+	 * until one of them runs out.
+	 * 
+	 * @param lists
+	 *            sorted positions of each word, none of them empty
+	 * @param count
+	 *            number of lists used
+	 * @return distance between the first and last position of the window
+	 */
+	public static int minimalSpan(int[][] lists, int count) {
+		int[] next = new int[count];
+		int best = Integer.MAX_VALUE;
+		while (true) {
+			int first = 0;
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for (int t = 0; t < count; t++) {
+				int position = lists[t][next[t]];
+				if (position < min) {
+					min = position;
+					first = t;
+				}
+				max = Math.max(max, position);
+			}
+			best = Math.min(best, max - min);
+			if (++next[first] == lists[first].length) {
+				return best;
+			}
+		}
+	}
+
+}
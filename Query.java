@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed search query: loose words, plus "quoted phrases" whose words must
+ * appear next to each other and in order. A conjunctive query only matches
+ * sites that contain every word and every phrase; otherwise a site matches if
+ * it contains any of them.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class Query {
+
+	private String[] words;
+	private ArrayList<String[]> phrases = new ArrayList<String[]>();
+	private boolean conjunctive;
+
+	/**
+	 * Parses a query. Text between double quotes is a phrase; an unclosed quote
+	 * runs to the end of the query.
+	 * 
+	 * @param text
+	 *            lower case query, words separated by spaces
+	 * @param conjunctive
+	 *            if true, every word and phrase must match
+	 */
+	public Query(String text, boolean conjunctive) {
+		this.conjunctive = conjunctive;
+
+		ArrayList<String> loose = new ArrayList<String>();
+		String[] parts = text.split("\"", -1);
+		for (int i = 0; i < parts.length; i++) {
+			ArrayList<String> tokens = new ArrayList<String>();
+			for (String token : parts[i].split(" ")) {
+				// skip the empty words left by repeated spaces
+				if (!token.isEmpty()) {
+					tokens.add(token);
+				}
+			}
+
+			// odd parts are inside quotes
+			if (i % 2 == 1 && !tokens.isEmpty()) {
+				phrases.add(tokens.toArray(new String[tokens.size()]));
+			} else {
+				loose.addAll(tokens);
+			}
+		}
+		words = loose.toArray(new String[loose.size()]);
+	}
+
+	/**
+	 * Gets the words that are not in a phrase.
+	 * 
+	 * @return loose words
+	 */
+	public String[] getWords() {
+		return words;
+	}
+
+	/**
+	 * Gets the quoted phrases.
+	 * 
+	 * @return phrases, each as its words in order
+	 */
+	public List<String[]> getPhrases() {
+		return phrases;
+	}
+
+	/**
+	 * Checks whether every word and phrase has to match.
+	 * 
+	 * @return true for an AND query, false for an OR query
+	 */
+	public boolean isConjunctive() {
+		return conjunctive;
+	}
+
+	/**
+	 * Gets the query in a normal form: the loose words separated by single
+	 * spaces, followed by each phrase in quotes. Queries with the same normal
+	 * form and mode have the same results.
+	 * 
+	 * @return normalized query
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (String word : words) {
+			if (text.length() > 0) {
+				text.append(' ');
+			}
+			text.append(word);
+		}
+		for (String[] phrase : phrases) {
+			if (text.length() > 0) {
+				text.append(' ');
+			}
+			text.append('"');
+			for (int i = 0; i < phrase.length; i++) {
+				if (i > 0) {
+					text.append(' ');
+				}
+				text.append(phrase[i]);
+			}
+			text.append('"');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Checks whether the query has nothing to search for.
+	 * 
+	 * @return true if there are no words and no phrases
+	 */
+	public boolean isEmpty() {
+		return words.length == 0 && phrases.isEmpty();
+	}
+
+}
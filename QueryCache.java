@@ -0,0 +1,199 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A threadsafe, size bounded cache of search result pages, keyed by the
+ * normalized query, its search mode and the page. Every entry remembers the
+ * generation of the {@link IndexSnapshot} it was computed from, and is only
+ * served while that snapshot is still the latest, so a commit or merge
+ * invalidates the whole cache without any explicit clearing. Entries also
+ * remember the version of the search settings they were ranked with, which
+ * {@link #clear()} increases, so a search still running when the settings
+ * change cannot cache pages ranked the old way. When the cache is full, the
+ * least recently used page is evicted.
+ * 
+ * Cached results are shared between requests and must not be modified.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class QueryCache {
+
+	// most result pages kept
+	private static final int CAPACITY = 1024;
+
+	private LinkedHashMap<String, Entry> entries;
+
+	// increased whenever the cache is cleared for new search settings
+	private long version = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	private static QueryCache cache = null;
+
+	/**
+	 * A cached page and the snapshot generation and settings version it
+	 * belongs to.
+	 */
+	private static class Entry {
+		private final long generation;
+		private final long version;
+		private final SearchResults results;
+
+		private Entry(long generation, long version, SearchResults results) {
+			this.generation = generation;
+			this.version = version;
+			this.results = results;
+		}
+	}
+
+	private QueryCache() {
+		// access order makes the eldest entry the least recently used
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > CAPACITY) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Makes the cache key of a page of results.
+	 * 
+	 * @param query
+	 * @param partial
+	 * @param page
+	 * @param pageSize
+	 * @return key
+	 */
+	public static String key(Query query, boolean partial, int page,
+			int pageSize) {
+		return (query.isConjunctive() ? "all " : "any ")
+				+ (partial ? "partial " : "exact ") + page + " " + pageSize
+				+ " " + query;
+	}
+
+	/**
+	 * Gets the version of the search settings. A search reads it before any
+	 * setting, and hands it to {@link #get} and {@link #put}.
+	 * 
+	 * @return settings version
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets a cached page, if it was computed from the given generation with
+	 * the current settings.
+	 * 
+	 * @param key
+	 * @param generation
+	 *            generation of the latest snapshot
+	 * @param version
+	 *            settings version read when the search started
+	 * @return results, or null on a miss
+	 */
+	public synchronized SearchResults get(String key, long generation,
+			long version) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.generation != generation
+				|| entry.version != version || version != this.version) {
+			if (entry != null) {
+				entries.remove(key);
+			}
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.results;
+	}
+
+	/**
+	 * Caches a page of results, unless the settings changed while they were
+	 * being computed.
+	 * 
+	 * @param key
+	 * @param generation
+	 *            generation of the snapshot the results came from
+	 * @param version
+	 *            settings version read when the search started
+	 * @param results
+	 */
+	public synchronized void put(String key, long generation, long version,
+			SearchResults results) {
+		if (version == this.version) {
+			entries.put(key, new Entry(generation, version, results));
+		}
+	}
+
+	/**
+	 * Drops every cached page and increases the settings version, so pages
+	 * still being computed with the old settings are not cached either.
+	 */
+	public synchronized void clear() {
+		version++;
+		entries.clear();
+	}
+
+	/**
+	 * Gets the number of searches served from the cache.
+	 * 
+	 * @return hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of searches that had to be computed.
+	 * 
+	 * @return misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of pages evicted to make room for others.
+	 * 
+	 * @return evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the number of cached pages, including stale ones not yet dropped.
+	 * 
+	 * @return size
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Uses a singleton pattern to get an instance of the QueryCache
+	 * 
+	 * @return cache
+	 */
+	public static QueryCache getInstance() {
+		if (cache == null) {
+			synchronized (QueryCache.class) {
+				if (cache == null) {
+					cache = new QueryCache();
+				}
+			}
+		}
+		return cache;
+	}
+
+}
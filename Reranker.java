@@ -0,0 +1,177 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The second phase of a search. The first phase ranks every matching site
+ * with the cheap {@link Scorer} of the query and keeps the best candidates;
+ * the reranker then adds the features that are too costly to work out for
+ * every match to the first few of those candidates:
+ * 
+ * <ul>
+ * <li>the static score of the site, its PageRank;</li>
+ * <li>how close together the query words occur, by {@link Proximity};</li>
+ * <li>how many of the query words appear in the url of the site.</li>
+ * </ul>
+ * 
+ * Every feature only raises a score, so the reranked candidates still come
+ * before the rest, and the number reranked bounds the cost of the phase
+ * however many sites match.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class Reranker {
+
+	// boost of a site whose url holds every query word
+	private static final float URL_WEIGHT = 0.5f;
+
+	private static final Pattern URL_SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+	private final IndexSnapshot snapshot;
+	private final String[] words;
+	private final boolean[] partial;
+
+	private final float[] staticScores;
+	private final float staticWeight;
+	private final Proximity proximity;
+
+	/**
+	 * Prepares to rerank the candidates of a query.
+	 * 
+	 * @param snapshot
+	 *            snapshot the candidates were found in
+	 * @param query
+	 * @param partial
+	 *            if true, loose query words also match every word starting
+	 *            with them
+	 * @param staticWeight
+	 *            how much the static scores of the snapshot count; 0 leaves
+	 *            them out
+	 * @param proximity
+	 *            if true, sites are boosted by the proximity of the query
+	 *            words
+	 */
+	public Reranker(IndexSnapshot snapshot, Query query, boolean partial,
+			float staticWeight, boolean proximity) {
+		this.snapshot = snapshot;
+
+		// every distinct word of the query, and whether it matches prefixes
+		LinkedHashMap<String, Boolean> terms = new LinkedHashMap<String, Boolean>();
+		for (String word : query.getWords()) {
+			terms.put(word, partial);
+		}
+		for (String[] phrase : query.getPhrases()) {
+			for (String word : phrase) {
+				if (!terms.containsKey(word)) {
+					terms.put(word, false);
+				}
+			}
+		}
+		words = terms.keySet().toArray(new String[terms.size()]);
+		this.partial = new boolean[words.length];
+		for (int t = 0; t < words.length; t++) {
+			this.partial[t] = terms.get(words[t]);
+		}
+
+		this.staticScores = snapshot.getStaticScores();
+		this.staticWeight = staticWeight;
+		this.proximity = proximity ? new Proximity(snapshot, terms) : null;
+	}
+
+	/**
+	 * Reranks the best candidates.
+	 * 
+	 * @param candidates
+	 *            sites and their first phase scores, best first
+	 * @param depth
+	 *            number of candidates to rerank
+	 * @param deadline
+	 *            candidates left when it passes keep their first phase score
+	 * @return the candidates, the first depth of them in their new order
+	 */
+	public ScoredDocs rerank(ScoredDocs candidates, int depth, Deadline deadline) {
+		int n = Math.min(depth, candidates.size());
+		if (n == 0) {
+			return candidates;
+		}
+
+		// visit the candidates in document order so cursors only move forward
+		long[] order = new long[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = ((long) candidates.getDocument(i) << 32) | i;
+		}
+		Arrays.sort(order);
+
+		TopDocs reranked = new TopDocs(n);
+		for (long key : order) {
+			int i = (int) key;
+			int doc = candidates.getDocument(i);
+			float score = candidates.getScore(i);
+			if (!deadline.isExpired()) {
+				score += boost(doc, deadline);
+			}
+			reranked.offer(doc, score);
+		}
+
+		// candidates past the depth keep their place after the reranked ones
+		ScoredDocs top = reranked.toResults();
+		int[] docs = new int[candidates.size()];
+		float[] scores = new float[candidates.size()];
+		for (int i = 0; i < docs.length; i++) {
+			docs[i] = i < n ? top.getDocument(i) : candidates.getDocument(i);
+			scores[i] = i < n ? top.getScore(i) : candidates.getScore(i);
+		}
+		return new ScoredDocs(docs, scores);
+	}
+
+	/**
+	 * Adds up the second phase features of a site.
+	 * 
+	 * @param doc
+	 *            document id
+	 * @param deadline
+	 * @return boost
+	 */
+	private float boost(int doc, Deadline deadline) {
+		float boost = 0;
+		if (staticScores != null && doc < staticScores.length) {
+			boost += staticWeight * staticScores[doc];
+		}
+		if (proximity != null) {
+			boost += proximity.boost(doc, deadline);
+		}
+		if (words.length > 0) {
+			boost += URL_WEIGHT * urlMatches(doc) / words.length;
+		}
+		return boost;
+	}
+
+	/**
+	 * Counts the query words found among the words of a site's url.
+	 * 
+	 * @param doc
+	 *            document id
+	 * @return number of query words in the url
+	 */
+	private int urlMatches(int doc) {
+		String url = snapshot.getUrl(doc);
+		if (url == null) {
+			return 0;
+		}
+		String[] tokens = URL_SEPARATORS.split(url.toLowerCase());
+
+		int matches = 0;
+		for (int t = 0; t < words.length; t++) {
+			for (String token : tokens) {
+				if (partial[t] ? token.startsWith(words[t]) : token
+						.equals(words[t])) {
+					matches++;
+					break;
+				}
+			}
+		}
+		return matches;
+	}
+
+}
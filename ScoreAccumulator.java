@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * Accumulates the scores of documents for one query in dense arrays indexed by
+ * document id, so adding to a score never boxes or hashes. An accumulator is
+ * meant to be reused: {@link #clear()} only bumps a generation stamp, so
+ * clearing does not touch the arrays and queries produce no garbage once the
+ * arrays have grown to the number of documents.
+ * 
+ * Not threadsafe; {@link #forCurrentThread()} hands out one per thread.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class ScoreAccumulator {
+
+	private float[] scores;
+	private int[] stamps;
+	private int stamp;
+
+	// documents in the order they were first scored
+	private int[] docs;
+	private int size;
+
+	// reused by every query evaluated on the same thread
+	private static ThreadLocal<ScoreAccumulator> accumulators = new ThreadLocal<ScoreAccumulator>() {
+		@Override
+		protected ScoreAccumulator initialValue() {
+			return new ScoreAccumulator();
+		}
+	};
+
+	/**
+	 * Makes an empty accumulator.
+	 */
+	public ScoreAccumulator() {
+		scores = new float[16];
+		stamps = new int[16];
+		docs = new int[16];
+		stamp = 1;
+		size = 0;
+	}
+
+	/**
+	 * Gets the calling thread's accumulator, cleared. Servlet threads and
+	 * {@link SearchExecutor} threads each keep their own, so their arrays are
+	 * only grown once.
+	 * 
+	 * @return an empty accumulator
+	 */
+	public static ScoreAccumulator forCurrentThread() {
+		ScoreAccumulator scores = accumulators.get();
+		scores.clear();
+		return scores;
+	}
+
+	/**
+	 * Forgets every score so the accumulator can be used for a new query.
+	 */
+	public void clear() {
+		size = 0;
+		stamp++;
+
+		// on wrap around, stale stamps could look current again
+		if (stamp == 0) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+	}
+
+	/**
+	 * Adds to the score of a document.
+	 * 
+	 * @param doc
+	 * @param rank
+	 */
+	public void add(int doc, float rank) {
+		if (doc >= scores.length) {
+			grow(doc + 1);
+		}
+
+		if (stamps[doc] != stamp) {
+			stamps[doc] = stamp;
+			scores[doc] = rank;
+			docs[size++] = doc;
+		} else {
+			scores[doc] += rank;
+		}
+	}
+
+	/**
+	 * Gets the number of documents that have been scored.
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the i-th document that was scored.
+	 * 
+	 * @param i
+	 * @return document id
+	 */
+	public int getDocument(int i) {
+		return docs[i];
+	}
+
+	/**
+	 * Gets the score of a document.
+	 * 
+	 * @param doc
+	 * @return score, or 0 if the document has not been scored
+	 */
+	public float getRank(int doc) {
+		if (doc >= scores.length || stamps[doc] != stamp) {
+			return 0;
+		}
+		return scores[doc];
+	}
+
+	/**
+	 * Grows the arrays so they can hold capacity documents.
+	 * 
+	 * @param capacity
+	 */
+	private void grow(int capacity) {
+		int length = Math.max(capacity, scores.length * 2);
+
+		float[] grownScores = new float[length];
+		int[] grownStamps = new int[length];
+		int[] grownDocs = new int[length];
+		System.arraycopy(scores, 0, grownScores, 0, scores.length);
+		System.arraycopy(stamps, 0, grownStamps, 0, stamps.length);
+		System.arraycopy(docs, 0, grownDocs, 0, size);
+
+		scores = grownScores;
+		stamps = grownStamps;
+		docs = grownDocs;
+	}
+
+}
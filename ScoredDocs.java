@@ -0,0 +1,82 @@
+import java.util.Arrays;
+
+/**
+ * A compact, read-only list of scored sites, best first: document ids and
+ * scores in two parallel primitive arrays rather than one object per site.
+ * Use {@link InvertedIndex#getUrl(int)} to get the url of a document id.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class ScoredDocs {
+
+	/**
+	 * An empty list.
+	 */
+	public static final ScoredDocs EMPTY = new ScoredDocs(new int[0],
+			new float[0]);
+
+	private final int[] docs;
+	private final float[] scores;
+
+	/**
+	 * Makes a list from parallel arrays, which are used as they are.
+	 * 
+	 * @param docs
+	 *            document ids, best first
+	 * @param scores
+	 *            score of each document
+	 */
+	public ScoredDocs(int[] docs, float[] scores) {
+		if (docs.length != scores.length) {
+			throw new IllegalArgumentException(
+					"Documents and scores differ in length.");
+		}
+		this.docs = docs;
+		this.scores = scores;
+	}
+
+	/**
+	 * Gets the number of sites in the list.
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return docs.length;
+	}
+
+	/**
+	 * Gets the document id of the i-th best site.
+	 * 
+	 * @param i
+	 * @return document id
+	 */
+	public int getDocument(int i) {
+		return docs[i];
+	}
+
+	/**
+	 * Gets the score of the i-th best site.
+	 * 
+	 * @param i
+	 * @return score
+	 */
+	public float getScore(int i) {
+		return scores[i];
+	}
+
+	/**
+	 * Copies a range of the list.
+	 * 
+	 * @param from
+	 *            first position, inclusive
+	 * @param to
+	 *            last position, exclusive
+	 * @return sites in the range
+	 */
+	public ScoredDocs subList(int from, int to) {
+		return new ScoredDocs(Arrays.copyOfRange(docs, from, to),
+				Arrays.copyOfRange(scores, from, to));
+	}
+
+}
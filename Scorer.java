@@ -0,0 +1,84 @@
+/**
+ * Scores the sites matching one query, called from the evaluation loops of
+ * {@link IndexSnapshot} for every posting they visit. Everything is passed as
+ * primitives, so a scorer adds no allocation to those loops. A scorer is made
+ * for each query by a {@link Factory}, which gets the collection statistics
+ * and the document frequency of every query word and phrase up front, so that
+ * weights only have to be worked out once.
+ * 
+ * The score of a site is the sum of the scores of the query words and phrases
+ * it contains; query independent features such as PageRank are left to the
+ * {@link Reranker}. The maximum scores must
+ * bound the scores from above, since top-k searches skip sites that cannot
+ * beat the results found so far. The shards of a parallel search
+ * share one scorer, so it must not change once made.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public interface Scorer {
+
+	/**
+	 * Makes the scorer of a query.
+	 */
+	public interface Factory {
+
+		/**
+		 * Makes a scorer for a query.
+		 * 
+		 * @param documentCount
+		 *            number of sites in the snapshot
+		 * @param averageLength
+		 *            average number of words in a site
+		 * @param wordFrequencies
+		 *            document frequency of every loose query word
+		 * @param phraseFrequencies
+		 *            estimated document frequency of every phrase
+		 * @return scorer
+		 */
+		public Scorer newScorer(int documentCount, float averageLength,
+				int[] wordFrequencies, int[] phraseFrequencies);
+
+	}
+
+	/**
+	 * Gets the weights of the loose query words, in query order.
+	 * 
+	 * @return weights
+	 */
+	public float[] getWordWeights();
+
+	/**
+	 * Gets the weights of the query phrases, in query order.
+	 * 
+	 * @return weights
+	 */
+	public float[] getPhraseWeights();
+
+	/**
+	 * Scores one word or phrase in a site.
+	 * 
+	 * @param weight
+	 *            weight of the word or phrase
+	 * @param frequency
+	 *            occurrences in the site
+	 * @param length
+	 *            number of words in the site
+	 * @return score
+	 */
+	public float score(float weight, int frequency, int length);
+
+	/**
+	 * Gets an upper bound on {@link #score(float, int, int)} in any site of a
+	 * segment.
+	 * 
+	 * @param weight
+	 * @param maxFrequency
+	 *            most occurrences in one site of the segment
+	 * @param minLength
+	 *            fewest words in one site of the segment
+	 * @return maximum score
+	 */
+	public float maxScore(float weight, int maxFrequency, int minLength);
+
+}
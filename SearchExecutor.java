@@ -0,0 +1,108 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A fixed pool of threads that evaluates the shards of a query in parallel.
+ * It is kept apart from the crawler's {@link WorkQueue}, so a busy crawl never
+ * delays a search and a search never waits behind page fetches. There is one
+ * thread per processor, since the work is bound by the CPU; the threads are
+ * daemons and do not keep the server from exiting.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class SearchExecutor {
+
+	private static Logger log = Logger.getLogger(SearchExecutor.class
+			.getName());
+
+	private final int threadCount;
+	private final ExecutorService pool;
+
+	private static SearchExecutor executor = null;
+
+	/**
+	 * Starts a pool of nThreads threads.
+	 * 
+	 * @param nThreads
+	 */
+	private SearchExecutor(int nThreads) {
+		threadCount = nThreads;
+		pool = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "search-"
+						+ count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		log.info("Started " + nThreads + " search threads.");
+	}
+
+	/**
+	 * Gets the number of threads in the pool.
+	 * 
+	 * @return thread count
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Runs every task in the pool and waits for all of them.
+	 * 
+	 * @param tasks
+	 * @return results, in the order of the tasks
+	 * @throws RuntimeException
+	 *             if a task failed, or if the calling thread was interrupted
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for (Future<T> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while searching.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Uses a singleton pattern to get an instance of the SearchExecutor
+	 * 
+	 * @return executor
+	 */
+	public static SearchExecutor getInstance() {
+		if (executor == null) {
+			synchronized (SearchExecutor.class) {
+				if (executor == null) {
+					executor = new SearchExecutor(Runtime.getRuntime()
+							.availableProcessors());
+				}
+			}
+		}
+		return executor;
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * One page of search results, as returned by
+ * {@link Searcher#search(String, boolean, boolean, int, int)}.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class SearchResults {
+
+	private ScoredDocs results;
+	private int page;
+	private int pageSize;
+	private boolean nextPage;
+	private int total;
+	private boolean exactTotal;
+	private boolean truncated;
+
+	/**
+	 * Makes a page of results.
+	 * 
+	 * @param results
+	 *            sites on the page, best first
+	 * @param page
+	 *            number of the page, starting at 0
+	 * @param pageSize
+	 *            most sites on a page
+	 * @param nextPage
+	 *            true if more results follow this page
+	 * @param total
+	 *            number of matching sites found
+	 * @param exactTotal
+	 *            true if every matching site was found, false if total is
+	 *            only a lower bound
+	 * @param truncated
+	 *            true if the search ran out of time before it was finished
+	 */
+	public SearchResults(ScoredDocs results, int page,
+			int pageSize, boolean nextPage, int total, boolean exactTotal,
+			boolean truncated) {
+		this.results = results;
+		this.page = page;
+		this.pageSize = pageSize;
+		this.nextPage = nextPage;
+		this.total = total;
+		this.exactTotal = exactTotal;
+		this.truncated = truncated;
+	}
+
+	/**
+	 * Gets the sites on the page.
+	 * 
+	 * @return sites and their ranks, best first
+	 */
+	public ScoredDocs getResults() {
+		return results;
+	}
+
+	/**
+	 * Gets the number of the page.
+	 * 
+	 * @return page, starting at 0
+	 */
+	public int getPage() {
+		return page;
+	}
+
+	/**
+	 * Gets the overall number of the first result on the page.
+	 * 
+	 * @return position of the first result, starting at 1
+	 */
+	public int getFirstResult() {
+		return page * pageSize + 1;
+	}
+
+	/**
+	 * Checks whether there are results after this page.
+	 * 
+	 * @return true if there is a next page
+	 */
+	public boolean hasNextPage() {
+		return nextPage;
+	}
+
+	/**
+	 * Gets the number of matching sites found. Only the sites up to the end
+	 * of the page, or the rerank depth if it is larger, are selected, so when
+	 * more sites match this is a lower bound.
+	 * 
+	 * @return total number of results, or a lower bound on it
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Checks whether {@link #getTotal()} counts every matching site.
+	 * 
+	 * @return true if the total is exact, false if it is a lower bound
+	 */
+	public boolean isExactTotal() {
+		return exactTotal;
+	}
+
+	/**
+	 * Checks whether the search ran out of time, in which case the page holds
+	 * the best sites found so far rather than the best sites overall.
+	 * 
+	 * @return true if the results are incomplete
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+}
@@ -1,15 +1,25 @@
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang.StringEscapeUtils;
+
 public class SearchServlet extends BaseServlet {
 
 	protected static DatabaseHandler db = DatabaseHandler.getInstance();
 	
+	// search results shown on one page
+	private static final int PAGE_SIZE = 10;
+	
+	// last page that can be asked for; later pages are not worth selecting
+	private static final int MAX_PAGE = 1000;
+	
+	// milliseconds a search may take before the best results so far are shown
+	private static final long SEARCH_BUDGET = 1000;
+	
 	/**
 	 * Checks for the login cookie. If found, displays a welcome message.
 	 * Otherwise, redirects to the {@link LoginServlet}.
@@ -103,8 +113,21 @@ public class SearchServlet extends BaseServlet {
 		if(partialSearch == null) {
 			partialSearch = "on";
 		}
+		
+		// only sites containing every word and "phrase" when checked
+		boolean matchAll = "on".equals(request.getParameter("matchAll"));
+		
+		// page of results to show, the first unless a page button was used
+		int page = 0;
+		try {
+			page = Math.min(MAX_PAGE,
+					Math.max(0, Integer.parseInt(request.getParameter("page"))));
+		} catch (NumberFormatException e) {
+			page = 0;
+		}
 				
-		if(!isPrivate(cookies)) {
+		// later pages of the same query are not saved again
+		if(!isPrivate(cookies) && page == 0) {
 			// get status from database handler saveQuery attempt
 			status = db.saveQuery(user, query);
 		}
@@ -116,31 +139,26 @@ public class SearchServlet extends BaseServlet {
 		}
 		
 		// ignore capitalization & remove whitespace and non-alphanumeric
-		// characters
+		// characters, keeping the quotes around phrases
 		String strippedQuery = query.toLowerCase().trim()
-				.replaceAll("[^a-zA-Z0-9 ]", "");
+				.replaceAll("[^a-zA-Z0-9 \"]", "");
 
 		try {
 			if (status == Status.OK) {
 				// if everything went okay, search
 				log.debug("Searching for queries.");
-				ArrayList<SiteRanker> ranksList = null;
+				SearchResults results = null;
 				
 				long start = -1;
 				long elapsed = -1;
 				
-					try {
-						start = System.currentTimeMillis();
-						if(partialSearch.equals("off")) {
-							ranksList = Searcher.noPartialSearch(strippedQuery);
-						} else {
-							ranksList = Searcher.partialSearch(strippedQuery);
-						}
-						elapsed = (System.currentTimeMillis() - start);
-					} catch (IOException e) {
-						log.error("IOException.");
-						e.printStackTrace();
-					}
+				// only the requested page is selected and rendered
+				start = System.currentTimeMillis();
+				results = Searcher.search(strippedQuery,
+						!partialSearch.equals("off"), matchAll, page, PAGE_SIZE,
+						new Deadline(SEARCH_BUDGET));
+				ScoredDocs ranksList = results.getResults();
+				elapsed = (System.currentTimeMillis() - start);
 
 				try {
 					PrintWriter out = response.getWriter();
@@ -173,29 +191,57 @@ public class SearchServlet extends BaseServlet {
 					// write search results to html file
 					
 					int numResults = ranksList.size();
+					int first = results.getFirstResult();
+					
+					// the total is a lower bound when not every match was ranked
+					String total = (results.isExactTotal() ? "" : "at least ")
+							+ results.getTotal();
 					
 					if(numResults == 0) {
 						out.println("<h2>There are no search results for <b>");
-					} else if (numResults == 1) {
+					} else if (numResults == 1 && page == 0) {
 						out.println("<h2>There is " + ranksList.size() + " search result for <b>");
-					}else {
-						out.println("<h2>There are " + ranksList.size() + " search results for <b>");
+					} else {
+						out.println("<h2>Search results " + first + " to "
+								+ (first + numResults - 1) + " of " + total
+								+ " for <b>");
 					}
 					
 					out.println(query + "</b></h2>\n");
 					
 					out.println("<center class=\"green\">(About " + elapsed/1000.0 + " seconds.)</center><br><br>");
 					
-					for (SiteRanker r : ranksList) {
-						out.println("<a href = \"redirect?url=" + r.getSiteName() + "\">"
-								+ r.getSiteName() + "</a> <br>");
-						URLParser parser = new URLParser(r.getSiteName());
+					if (results.isTruncated()) {
+						// the search was stopped, so better matches may exist
+						out.println("<center><p style=\"color: red;\">The search took too long; "
+								+ "these are the best results found in time. Try a longer query.</p></center>");
+					}
+					
+					InvertedIndex index = InvertedIndex.getInstance();
+					
+					for (int i = 0; i < ranksList.size(); i++) {
+						// resolve the document id only when rendering
+						String url = index.getUrl(ranksList.getDocument(i));
+						out.println("<a href = \"redirect?url=" + url + "\">"
+								+ url + "</a> <br>");
+						URLParser parser = new URLParser(url);
 						out.println("<h3>" + parser.getDomain()
 								+ "</h3><br>");
-						String snippet = db.getSnippet(r.getSiteName());
+						String snippet = db.getSnippet(url);
 						out.println(snippet + "<br><br>");
 					}
 					out.println();
+					
+					out.println("<center>");
+					if (page > 0) {
+						printPageButton(out, query, partialSearch, matchAll,
+								page - 1, "Previous page");
+					}
+					if (results.hasNextPage()) {
+						printPageButton(out, query, partialSearch, matchAll,
+								page + 1, "Next page");
+					}
+					out.println("</center>");
 
 					out.println("<br><br><br>");
 
@@ -225,6 +271,37 @@ public class SearchServlet extends BaseServlet {
 		finishResponse(response);
 	}
 
+	/**
+	 * Prints a button that shows another page of the same search.
+	 * 
+	 * @param out
+	 *            PrintWriter from HTTP response
+	 * @param query
+	 *            the query as the user typed it
+	 * @param partialSearch
+	 *            "off" if partial search is turned off
+	 * @param matchAll
+	 *            true if every word has to match
+	 * @param page
+	 *            number of the page to show
+	 * @param label
+	 *            text of the button
+	 */
+	private void printPageButton(PrintWriter out, String query,
+			String partialSearch, boolean matchAll, int page, String label) {
+		out.println("<form action=\"/search\" method=\"post\" style=\"display: inline\">");
+		out.println("\t<input type=\"hidden\" name=\"query\" value=\""
+				+ StringEscapeUtils.escapeHtml(query) + "\">");
+		out.println("\t<input type=\"hidden\" name=\"partialSearch\" value=\""
+				+ StringEscapeUtils.escapeHtml(partialSearch) + "\">");
+		if (matchAll) {
+			out.println("\t<input type=\"hidden\" name=\"matchAll\" value=\"on\">");
+		}
+		out.println("\t<input type=\"hidden\" name=\"page\" value=\"" + page + "\">");
+		out.println("\t<input type=\"submit\" value=\"" + label + "\">");
+		out.println("</form>");
+	}
+
 	/**
 	 * Prints search form using supplied PrintWriter.
 	 * 
@@ -244,6 +321,7 @@ public class SearchServlet extends BaseServlet {
 		out.println("\t<center>");
 		out.println("\t\t<input type=\"text\" name=\"query\" size=\"100\">");
 		out.println("<p><input type=\"checkbox\" name=\"partialSearch\" value=\"off\" /> Turn off partial search<br /></p>");
+		out.println("<p><input type=\"checkbox\" name=\"matchAll\" value=\"on\" /> Match all words (put \"phrases\" in quotes)<br /></p>");
 		out.println("<p>Private search mode is <a href=\"/account\">" + privSearch + "</a>.</p>");
 		out.println("<p><input type=\"submit\" value=\"Search\" style=\"height: 50px; width: 75px\" ></p>");
 		out.println("</form>");
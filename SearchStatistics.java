@@ -0,0 +1,113 @@
+/**
+ * Threadsafe timings of the two phases of searching: selecting the best
+ * candidates among every matching site, and reranking the first of them with
+ * the costlier features of a {@link Reranker}. Shown on the administrator
+ * page next to the {@link QueryCache} counts.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class SearchStatistics {
+
+	private long searches = 0;
+	private long selectNanos = 0;
+	private long rerankNanos = 0;
+	private long maxSelectNanos = 0;
+	private long maxRerankNanos = 0;
+	private long reranked = 0;
+
+	private static SearchStatistics statistics = null;
+
+	private SearchStatistics() {
+	}
+
+	/**
+	 * Records the timings of one search.
+	 * 
+	 * @param select
+	 *            nanoseconds spent selecting candidates
+	 * @param rerank
+	 *            nanoseconds spent reranking them
+	 * @param candidates
+	 *            number of candidates reranked
+	 */
+	public synchronized void record(long select, long rerank, int candidates) {
+		searches++;
+		selectNanos += select;
+		rerankNanos += rerank;
+		maxSelectNanos = Math.max(maxSelectNanos, select);
+		maxRerankNanos = Math.max(maxRerankNanos, rerank);
+		reranked += candidates;
+	}
+
+	/**
+	 * Gets the number of searches recorded.
+	 * 
+	 * @return searches
+	 */
+	public synchronized long getSearches() {
+		return searches;
+	}
+
+	/**
+	 * Gets the average time spent selecting candidates.
+	 * 
+	 * @return milliseconds per search
+	 */
+	public synchronized double getAverageSelectTime() {
+		return searches == 0 ? 0 : selectNanos / 1e6 / searches;
+	}
+
+	/**
+	 * Gets the average time spent reranking candidates.
+	 * 
+	 * @return milliseconds per search
+	 */
+	public synchronized double getAverageRerankTime() {
+		return searches == 0 ? 0 : rerankNanos / 1e6 / searches;
+	}
+
+	/**
+	 * Gets the longest time any search spent selecting candidates.
+	 * 
+	 * @return milliseconds
+	 */
+	public synchronized double getMaxSelectTime() {
+		return maxSelectNanos / 1e6;
+	}
+
+	/**
+	 * Gets the longest time any search spent reranking candidates.
+	 * 
+	 * @return milliseconds
+	 */
+	public synchronized double getMaxRerankTime() {
+		return maxRerankNanos / 1e6;
+	}
+
+	/**
+	 * Gets the average number of candidates reranked.
+	 * 
+	 * @return candidates per search
+	 */
+	public synchronized double getAverageReranked() {
+		return searches == 0 ? 0 : (double) reranked / searches;
+	}
+
+	/**
+	 * Uses a singleton pattern to get an instance of the SearchStatistics
+	 * 
+	 * @return statistics
+	 */
+	public static SearchStatistics getInstance() {
+		if (statistics == null) {
+			synchronized (SearchStatistics.class) {
+				if (statistics == null) {
+					statistics = new SearchStatistics();
+				}
+			}
+		}
+		return statistics;
+	}
+
+}
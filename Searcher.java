@@ -1,13 +1,13 @@
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Set;
-
 import org.apache.log4j.Logger;
 
 /**
- * Searches the inverted index for queries.
+ * Searches the inverted index for queries in two phases. First the best
+ * candidates among every matching site are selected by a cheap {@link Scorer},
+ * {@link BM25} unless another is chosen with
+ * {@link #setScorerFactory(Scorer.Factory)}. Then the first
+ * {@link #setRerankDepth(int) rerank depth} of them are reranked by a
+ * {@link Reranker}, which adds the static score, proximity and url matches of
+ * each. The time spent in each phase is kept in {@link SearchStatistics}.
  * 
  * @author Steely Morneau
  *
@@ -16,237 +16,238 @@ public class Searcher {
 
 	private static Logger log = Logger.getLogger(Searcher.class.getName());
 
+	private static QueryCache cache = QueryCache.getInstance();
 
-	/**
-	 * Searches the index for any word that begins with query.
-	 * 
-	 * @param query
-	 * @return a list of sites and their ranks
-	 * @throws IOException
-	 */
-	public static ArrayList<SiteRanker> partialSearch(String query)
-			throws IOException {
-
-		InvertedIndex index = InvertedIndex.getInstance();
-
-		ArrayList<String> sortedKeys = new ArrayList<String>();
-		for (String key : index.getMapsWords()) {
-			sortedKeys.add(key);
-		}
-
-		Collections.sort(sortedKeys);
-		log.debug(sortedKeys);
-
-		String[] queryList = query.split(" ");
-
-		// fake set to deny duplicates of filenames
-		HashMap<String, Integer> resultsMap = new HashMap<String, Integer>();
-
-		// for a query: list of rankable filenames
-		ArrayList<SiteRanker> ranksList = new ArrayList<SiteRanker>();
-
-		// for every individual query word
-		for (String queryWord : queryList) {
-
-			log.debug("Currently processing " + queryWord + " of " + query);
-
-			char firstChar = queryWord.charAt(0);
-			String letter = Character.toString(firstChar);
-
-			// find starting point
-			int start = Collections.binarySearch(sortedKeys, letter);
-
-			// if negative, convert to insertion point
-			if (start < 0)
-				start = -(start + 1);
-
-			int end = start;
-
-			// find end point
-			for (int i = start; i < sortedKeys.size(); i++) {
-				if (!sortedKeys.get(i).startsWith(letter))
-					break;
-
-				end++;
-			}
-
-			if (end >= sortedKeys.size()) {
-				end = sortedKeys.size() - 1;
-			}
+	private static SearchExecutor executor = SearchExecutor.getInstance();
 
-			log.debug("startIndex: " + start);
-			log.debug("endIndex: " + end);
+	private static SearchStatistics statistics = SearchStatistics.getInstance();
 
-			while (start <= end) {
+	private static volatile Scorer.Factory scorerFactory = BM25.FACTORY;
 
-				String wordFromIndex = sortedKeys.get(start);
-				if (wordFromIndex.startsWith(queryWord)) {
-					log.debug(wordFromIndex + " starts with " + queryWord);
+	// how much the static score of a site, its PageRank, counts
+	private static volatile float staticWeight = 1;
 
-					// map of filenames/occurrences of query
-					Set<String> queryMap = index.getWordsUrls(wordFromIndex);
+	// candidates reranked in the second phase
+	private static volatile int rerankDepth = 100;
 
-					// for every file containing word
-					for (String fileName : queryMap) {
-
-						// if the file isn't already in resultsMap, add it
-						if (!resultsMap.containsKey(fileName)) {
-							resultsMap.put(fileName, index.getSitesRankforWord(
-									wordFromIndex, fileName));
-							log.debug("filename: " + fileName + "; rank: "
-									+ resultsMap.get(fileName));
-
-						} else { // if the file is already in resultsMap
-							log.debug("old rank: "
-									+ resultsMap.get(fileName)
-									+ "; curr rank: "
-									+ index.getSitesRankforWord(wordFromIndex,
-											fileName));
-
-							// add current rank to new rank
-							Integer newRank = resultsMap.get(fileName)
-									+ index.getSitesRankforWord(wordFromIndex,
-											fileName);
-
-							// update occurrences for file
-							resultsMap.put(fileName, newRank);
-							log.debug("new rank: " + resultsMap.get(fileName));
-
-						}
-					}
-
-				}
-				start++;
-			}
+	private static volatile boolean proximity = true;
 
+	/**
+	 * Chooses how sites are scored from now on. Cached results were scored the
+	 * old way, so the {@link QueryCache} is cleared.
+	 * 
+	 * @param factory
+	 *            makes the scorer of each query
+	 */
+	public static void setScorerFactory(Scorer.Factory factory) {
+		if (factory == null) {
+			throw new IllegalArgumentException("Factory must not be null.");
 		}
+		scorerFactory = factory;
+		cache.clear();
+	}
 
-		// add files from resultsMap to ranksList
-		for (String fileName : resultsMap.keySet()) {
-			ranksList.add(new SiteRanker(fileName, resultsMap.get(fileName)));
-			log.debug("Add " + fileName + "'s fileRanker object to ranksList.");
+	/**
+	 * Chooses how much the static scores of sites count from now on. The
+	 * {@link QueryCache} is cleared, since cached results used the old weight.
+	 * 
+	 * @param weight
+	 *            at least 0; 0 ranks sites by their words alone
+	 */
+	public static void setStaticWeight(float weight) {
+		if (!(weight >= 0)) {
+			throw new IllegalArgumentException("Weight must not be negative.");
 		}
+		staticWeight = weight;
+		cache.clear();
+	}
 
-		log.debug("Sort files.");
-		Collections.sort(ranksList);
-
-		return ranksList;
+	/**
+	 * Turns the proximity feature of the second phase on or off. The
+	 * {@link QueryCache} is cleared, since cached results were ranked the old
+	 * way.
+	 * 
+	 * @param enabled
+	 *            if true, the best candidates are boosted by how close
+	 *            together the query words occur in them
+	 */
+	public static void setProximity(boolean enabled) {
+		proximity = enabled;
+		cache.clear();
+	}
 
+	/**
+	 * Chooses how many of the best candidates are reranked from now on. The
+	 * more are reranked, the more often a site that only ranks well with the
+	 * second phase features is found, and the longer each search takes. The
+	 * {@link QueryCache} is cleared, since cached results used the old depth.
+	 * 
+	 * @param depth
+	 *            at least 0; 0 ranks sites by the first phase alone
+	 */
+	public static void setRerankDepth(int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("Depth must not be negative.");
+		}
+		rerankDepth = depth;
+		cache.clear();
 	}
 
 	/**
-	 * Searches the index for the query.
+	 * Selects the best ranked candidates in a snapshot matching a parsed
+	 * query, at least k of them and at least the rerank depth, and reranks
+	 * the first depth of them. The depth does not depend on k, so every page
+	 * sees the same order.
 	 * 
+	 * @param snapshot
 	 * @param query
-	 * @return
+	 * @param partial
+	 * @param k
+	 * @param depth
+	 *            number of candidates to rerank
+	 * @param deadline
+	 * @return at most the larger of k and depth sites and their ranks, best
+	 *         first; fewer only if fewer sites match
 	 */
-	public static ArrayList<SiteRanker> noPartialSearch(String query)
-			throws IOException {
-		InvertedIndex index = InvertedIndex.getInstance();
-
-		ArrayList<String> sortedKeys = new ArrayList<String>();
-		for (String key : index.getMapsWords()) {
-			sortedKeys.add(key);
+	private static ScoredDocs search(IndexSnapshot snapshot, Query query,
+			boolean partial, int k, int depth, Deadline deadline) {
+		log.debug("Searching for the top " + k + " of " + query
+				+ "; partial: " + partial + "; generation: "
+				+ snapshot.getGeneration());
+
+		long start = System.nanoTime();
+		Scorer scorer = snapshot.getScorer(query, partial, scorerFactory);
+		ScoredDocs top = snapshot.topRanks(query, partial, Math.max(k, depth),
+				scorer, deadline, executor).toResults();
+
+		long selected = System.nanoTime();
+		top = rerank(snapshot, query, partial, top, depth, deadline);
+		long reranked = System.nanoTime();
+
+		statistics.record(selected - start, reranked - selected,
+				Math.min(depth, top.size()));
+		log.debug("Selected " + top.size() + " candidates in "
+				+ (selected - start) / 1000 + " us and reranked them in "
+				+ (reranked - selected) / 1000 + " us.");
+
+		if (deadline.wasReached()) {
+			log.info("Ran out of time searching for " + query + "; returning "
+					+ top.size() + " sites found so far.");
 		}
+		return top;
+	}
 
-		Collections.sort(sortedKeys);
-		log.debug(sortedKeys);
-
-		String[] queryList = query.split(" ");
-
-		// fake set to deny duplicates of filenames
-		HashMap<String, Integer> resultsMap = new HashMap<String, Integer>();
-
-		// for a query: list of rankable filenames
-		ArrayList<SiteRanker> ranksList = new ArrayList<SiteRanker>();
-
-		// for every individual query word
-		for (String queryWord : queryList) {
-
-			log.debug("Currently processing " + queryWord + " of " + query);
-
-			char firstChar = queryWord.charAt(0);
-			String letter = Character.toString(firstChar);
-
-			// find starting point
-			int start = Collections.binarySearch(sortedKeys, letter);
-
-			// if negative, convert to insertion point
-			if (start < 0)
-				start = -(start + 1);
-
-			int end = start;
-
-			// find end point
-			for (int i = start; i < sortedKeys.size(); i++) {
-				if (!sortedKeys.get(i).startsWith(letter))
-					break;
-
-				end++;
-			}
-
-			if (end >= sortedKeys.size()) {
-				end = sortedKeys.size() - 1;
-			}
-
-			log.debug("startIndex: " + start);
-			log.debug("endIndex: " + end);
-
-			while (start <= end) {
-
-				String wordFromIndex = sortedKeys.get(start);
-				if (wordFromIndex.equals(queryWord)) {
-					log.debug(wordFromIndex + " is " + queryWord);
+	/**
+	 * Gets one page of the sites matching the query, best first. Only the
+	 * sites up to the end of the page are selected, in a bounded heap, so the
+	 * cost grows with the page number rather than with the number of matches.
+	 * Pages are served from the {@link QueryCache} while the index has not
+	 * changed since they were computed.
+	 * 
+	 * @param query
+	 * @param partial
+	 *            if true, query words also match words starting with them
+	 * @param all
+	 *            if true, only sites containing every word and phrase match
+	 * @param page
+	 *            number of the page, starting at 0
+	 * @param pageSize
+	 *            most sites on a page
+	 * @return the page
+	 */
+	public static SearchResults search(String query, boolean partial,
+			boolean all, int page, int pageSize) {
+		return search(query, partial, all, page, pageSize, Deadline.NONE);
+	}
 
-					// map of filenames/occurrences of query
-					Set<String> queryMap = index.getWordsUrls(wordFromIndex);
+	/**
+	 * Gets one page of the sites matching the query within a time budget. If
+	 * the deadline passes, evaluation stops and the page is made of the best
+	 * sites found so far, marked as truncated. Truncated pages are not cached.
+	 * 
+	 * @param query
+	 * @param partial
+	 *            if true, query words also match words starting with them
+	 * @param all
+	 *            if true, only sites containing every word and phrase match
+	 * @param page
+	 *            number of the page, starting at 0
+	 * @param pageSize
+	 *            most sites on a page
+	 * @param deadline
+	 * @return the page, empty if it starts too far down to be selected
+	 */
+	public static SearchResults search(String query, boolean partial,
+			boolean all, int page, int pageSize, Deadline deadline) {
+		if (page < 0 || pageSize < 1) {
+			throw new IllegalArgumentException("Bad page " + page
+					+ " of size " + pageSize + ".");
+		}
 
-					// for every file containing word
-					for (String fileName : queryMap) {
+		// the heap holds every site up to the end of the page, and one more
+		if (((long) page + 1) * pageSize >= Integer.MAX_VALUE) {
+			return new SearchResults(ScoredDocs.EMPTY, page, pageSize, false,
+					0, false, false);
+		}
 
-						// if the file isn't already in resultsMap, add it
-						if (!resultsMap.containsKey(fileName)) {
-							resultsMap.put(fileName, index.getSitesRankforWord(
-									wordFromIndex, fileName));
-							log.debug("filename: " + fileName + "; rank: "
-									+ resultsMap.get(fileName));
+		// read before any setting, so a change during the search is noticed
+		long version = cache.getVersion();
+		int depth = rerankDepth;
 
-						} else { // if the file is already in resultsMap
-							log.debug("old rank: "
-									+ resultsMap.get(fileName)
-									+ "; curr rank: "
-									+ index.getSitesRankforWord(wordFromIndex,
-											fileName));
+		IndexSnapshot snapshot = InvertedIndex.getInstance().getSnapshot();
+		Query parsed = new Query(query, all);
 
-							// add current rank to new rank
-							Integer newRank = resultsMap.get(fileName)
-									+ index.getSitesRankforWord(wordFromIndex,
-											fileName);
+		// the key uses the parsed query, so spacing does not matter
+		String key = QueryCache.key(parsed, partial, page, pageSize);
+		SearchResults results = cache.get(key, snapshot.getGeneration(),
+				version);
+		if (results != null) {
+			log.debug("Serving " + key + " from the cache.");
+			return results;
+		}
 
-							// update occurrences for file
-							resultsMap.put(fileName, newRank);
-							log.debug("new rank: " + resultsMap.get(fileName));
+		// one more than the page needs tells whether another page follows
+		int end = (page + 1) * pageSize;
+		ScoredDocs top = search(snapshot, parsed, partial, end + 1, depth,
+				deadline);
 
-						}
-					}
+		int from = Math.min(page * pageSize, top.size());
+		int to = Math.min(end, top.size());
+		boolean truncated = deadline.wasReached();
 
-				}
-				start++;
-			}
+		// every match was selected unless the heap filled up or time ran out
+		boolean exact = top.size() < Math.max(end + 1, depth) && !truncated;
+		results = new SearchResults(top.subList(from, to), page, pageSize,
+				top.size() > end, top.size(), exact, truncated);
 
+		// a complete search may give different results, so do not keep these
+		if (!truncated) {
+			cache.put(key, snapshot.getGeneration(), version, results);
 		}
+		return results;
+	}
 
-		// add files from resultsMap to ranksList
-		for (String fileName : resultsMap.keySet()) {
-			ranksList.add(new SiteRanker(fileName, resultsMap.get(fileName)));
-			log.debug("Add " + fileName + "'s fileRanker object to ranksList.");
+	/**
+	 * Runs the second phase on the best candidates of a query.
+	 * 
+	 * @param snapshot
+	 * @param query
+	 * @param partial
+	 * @param candidates
+	 *            sites and their first phase scores, best first
+	 * @param depth
+	 *            number of candidates to rerank
+	 * @param deadline
+	 * @return the candidates, the first depth of them reranked
+	 */
+	private static ScoredDocs rerank(IndexSnapshot snapshot, Query query,
+			boolean partial, ScoredDocs candidates, int depth, Deadline deadline) {
+		if (depth == 0 || candidates.size() == 0) {
+			return candidates;
 		}
-
-		log.debug("Sort files.");
-		Collections.sort(ranksList);
-
-		return ranksList;
-
+		Reranker reranker = new Reranker(snapshot, query, partial,
+				staticWeight, proximity);
+		return reranker.rerank(candidates, depth, deadline);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+import org.apache.log4j.Logger;
+
+/**
+ * Compacts the segments of the {@link InvertedIndex} in the background, so
+ * searches do not slow down as more and more small segments are committed.
+ * 
+ * Uses a size-tiered policy: a segment's tier is how many times larger than a
+ * fresh commit it is, in powers of MERGE_FACTOR. Whenever MERGE_FACTOR
+ * neighboring segments are in the same tier, they are merged into one segment
+ * of the next tier. Only neighbors are merged, so every segment keeps covering
+ * a contiguous range of document ids.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class SegmentMerger extends Thread {
+
+	private static Logger log = Logger.getLogger(SegmentMerger.class.getName());
+
+	// number of same-tier segments merged at once
+	private static final int MERGE_FACTOR = 4;
+
+	// largest segment, in documents, that is still in the lowest tier
+	private static final int TIER_SIZE = 16;
+
+	private InvertedIndex index;
+	private boolean changed = false;
+
+	/**
+	 * Makes a daemon merger for an index. Call {@link #start()} to run it.
+	 * 
+	 * @param index
+	 */
+	public SegmentMerger(InvertedIndex index) {
+		super("SegmentMerger");
+		this.index = index;
+		setDaemon(true);
+	}
+
+	/**
+	 * Tells the merger that a new snapshot has been published.
+	 */
+	public synchronized void segmentsChanged() {
+		changed = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Waits for new segments and merges them until no tier is full.
+	 */
+	public void run() {
+		while (true) {
+			synchronized (this) {
+				while (!changed) {
+					try {
+						this.wait();
+					} catch (InterruptedException e) {
+						log.error("InterruptedException");
+						return;
+					}
+				}
+				changed = false;
+			}
+
+			while (mergeOnce()) {
+				// keep merging, a merge can fill the next tier
+			}
+		}
+	}
+
+	/**
+	 * Merges the first run of MERGE_FACTOR neighboring same-tier segments in
+	 * the latest snapshot, if there is one.
+	 * 
+	 * @return true if segments were merged
+	 */
+	private boolean mergeOnce() {
+		IndexSnapshot snapshot = index.getSnapshot();
+
+		int start = 0;
+		for (int i = 1; i <= snapshot.getSegmentCount(); i++) {
+			if (i == snapshot.getSegmentCount()
+					|| tier(snapshot.getSegment(i)) != tier(snapshot
+							.getSegment(start))) {
+				start = i;
+			} else if (i - start + 1 == MERGE_FACTOR) {
+				break;
+			}
+		}
+		if (start >= snapshot.getSegmentCount()) {
+			return false;
+		}
+
+		IndexSegment[] run = new IndexSegment[MERGE_FACTOR];
+		for (int i = 0; i < MERGE_FACTOR; i++) {
+			run[i] = snapshot.getSegment(start + i);
+		}
+
+		long begin = System.currentTimeMillis();
+		IndexSegment merged = IndexSegment.merge(run, index.isOffHeap());
+		log.info("Merged " + MERGE_FACTOR + " segments into one of "
+				+ merged.getDocumentCount() + " sites in "
+				+ (System.currentTimeMillis() - begin) + " ms.");
+
+		return index.replaceSegments(run, merged);
+	}
+
+	/**
+	 * Gets the size tier of a segment.
+	 * 
+	 * @param segment
+	 * @return tier, 0 for segments no larger than one commit
+	 */
+	private static int tier(IndexSegment segment) {
+		int tier = 0;
+		long limit = TIER_SIZE;
+		while (segment.getDocumentCount() > limit) {
+			limit *= MERGE_FACTOR;
+			tier++;
+		}
+		return tier;
+	}
+
+}
@@ -35,7 +35,9 @@ public enum Status
 	INVALID_URL			(18, "The url is invalid"),
 	INCORRECT_PASSWORD	(19, "Incorrect current password. Unable to change password"),
 	CLEARED_VISITED		(20, "Your visited history has been cleared"),
-	SAME_PASS			(21, "New password must be different from old password.");
+	SAME_PASS			(21, "New password must be different from old password."),
+	INDEX_SAVED			(22, "The index has been saved"),
+	INDEX_NOT_SAVED		(23, "Unable to save the index");
 	
 	// private members
 	private final String message;
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+
+/**
+ * An immutable radix trie over a sorted list of words, used as the word
+ * dictionary of an {@link IndexSegment}. Shared prefixes are stored once, and
+ * the whole trie lives in a handful of flat arrays instead of one object per
+ * node or per word.
+ * 
+ * Word numbers are positions in sorted order, so all of the words below a
+ * node have consecutive numbers. Finding every word with a prefix therefore
+ * costs one walk down the trie, and the result is a range of word numbers.
+ * 
+ * Nodes are numbered in breadth-first order, which keeps the children of a
+ * node next to each other: the children of node n are the nodes from
+ * firstChild[n] up to firstChild[n + 1]. Likewise the label of node n is the
+ * characters from labelStart[n] up to labelStart[n + 1].
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class TermTrie {
+
+	private final char[] labels;
+	private final int[] labelStart;
+	private final int[] firstChild;
+	private final int[] parent;
+
+	// words below node n are numbered from firstWord[n] up to endWord[n]
+	private final int[] firstWord;
+	private final int[] endWord;
+	private final boolean[] terminal;
+
+	// node at which each word ends
+	private final int[] wordNode;
+
+	/**
+	 * Builds the trie of a list of words.
+	 * 
+	 * @param words
+	 *            distinct words in sorted order
+	 */
+	public TermTrie(String[] words) {
+		int capacity = 2 * words.length + 1;
+		int[] lows = new int[capacity];
+		int[] highs = new int[capacity];
+		int[] depths = new int[capacity];
+		int[] parents = new int[capacity];
+		int[] starts = new int[capacity + 1];
+		int[] children = new int[capacity + 1];
+		int[] firsts = new int[capacity];
+		int[] ends = new int[capacity];
+		boolean[] terminals = new boolean[capacity];
+		wordNode = new int[words.length];
+		StringBuilder chars = new StringBuilder();
+
+		// the queue of word ranges doubles as the node list
+		int count = 0;
+		if (words.length > 0) {
+			lows[0] = 0;
+			highs[0] = words.length;
+			depths[0] = 0;
+			parents[0] = -1;
+			count = 1;
+		}
+
+		for (int n = 0; n < count; n++) {
+			int low = lows[n];
+			int high = highs[n];
+			String first = words[low];
+			String last = words[high - 1];
+
+			// sorted, so the shared prefix of the range is that of its ends
+			int depth = depths[n];
+			while (depth < first.length() && depth < last.length()
+					&& first.charAt(depth) == last.charAt(depth)) {
+				depth++;
+			}
+
+			starts[n] = chars.length();
+			chars.append(first, depths[n], depth);
+			firsts[n] = low;
+			ends[n] = high;
+			children[n] = count;
+
+			int next = low;
+			if (first.length() == depth) {
+				terminals[n] = true;
+				wordNode[low] = n;
+				next++;
+			}
+
+			// one child per distinct next character
+			while (next < high) {
+				char c = words[next].charAt(depth);
+				int end = next;
+				while (end < high && words[end].charAt(depth) == c) {
+					end++;
+				}
+				lows[count] = next;
+				highs[count] = end;
+				depths[count] = depth;
+				parents[count] = n;
+				count++;
+				next = end;
+			}
+		}
+		starts[count] = chars.length();
+		children[count] = count;
+
+		labels = chars.toString().toCharArray();
+		labelStart = Arrays.copyOf(starts, count + 1);
+		firstChild = Arrays.copyOf(children, count + 1);
+		parent = Arrays.copyOf(parents, count);
+		firstWord = Arrays.copyOf(firsts, count);
+		endWord = Arrays.copyOf(ends, count);
+		terminal = Arrays.copyOf(terminals, count);
+	}
+
+	/**
+	 * Gets the number of words in the trie.
+	 * 
+	 * @return number of words
+	 */
+	public int size() {
+		return wordNode.length;
+	}
+
+	/**
+	 * Finds the number of a word.
+	 * 
+	 * @param word
+	 * @return number of the word, or -1 if it is not in the trie
+	 */
+	public int find(String word) {
+		int node = walk(word, false);
+		if (node < 0 || !terminal[node]) {
+			return -1;
+		}
+		return firstWord[node];
+	}
+
+	/**
+	 * Gets the number of the first word that starts with prefix.
+	 * 
+	 * @param prefix
+	 * @return first word number, equal to {@link #prefixEnd(String)} if no
+	 *         word starts with prefix
+	 */
+	public int prefixStart(String prefix) {
+		int node = walk(prefix, true);
+		return node < 0 ? 0 : firstWord[node];
+	}
+
+	/**
+	 * Gets the number just past the last word that starts with prefix.
+	 * 
+	 * @param prefix
+	 * @return end of the word numbers
+	 */
+	public int prefixEnd(String prefix) {
+		int node = walk(prefix, true);
+		return node < 0 ? 0 : endWord[node];
+	}
+
+	/**
+	 * Gets a word by its number, by joining the labels on the path from the
+	 * root to the node where the word ends.
+	 * 
+	 * @param i
+	 *            number of the word
+	 * @return word
+	 */
+	public String getWord(int i) {
+		int depth = 0;
+		for (int node = wordNode[i]; node >= 0; node = parent[node]) {
+			depth++;
+		}
+
+		int[] path = new int[depth];
+		for (int node = wordNode[i]; node >= 0; node = parent[node]) {
+			path[--depth] = node;
+		}
+
+		StringBuilder word = new StringBuilder();
+		for (int node : path) {
+			word.append(labels, labelStart[node], labelStart[node + 1]
+					- labelStart[node]);
+		}
+		return word.toString();
+	}
+
+	/**
+	 * Walks down the trie along key.
+	 * 
+	 * @param key
+	 * @param prefix
+	 *            if true, key may end in the middle of a node's label
+	 * @return node where key ends, or -1 if no word continues key
+	 */
+	private int walk(String key, boolean prefix) {
+		if (wordNode.length == 0) {
+			return -1;
+		}
+
+		int node = 0;
+		int pos = 0;
+		while (true) {
+			for (int c = labelStart[node]; c < labelStart[node + 1]; c++) {
+				if (pos == key.length()) {
+					return prefix ? node : -1;
+				}
+				if (labels[c] != key.charAt(pos)) {
+					return -1;
+				}
+				pos++;
+			}
+
+			if (pos == key.length()) {
+				return node;
+			}
+
+			node = findChild(node, key.charAt(pos));
+			if (node < 0) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Finds the child of a node whose label starts with c.
+	 * 
+	 * @param node
+	 * @param c
+	 * @return child node, or -1 if there is none
+	 */
+	private int findChild(int node, char c) {
+		// children are in sorted order of their first character
+		int low = firstChild[node];
+		int high = firstChild[node + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char first = labels[labelStart[mid]];
+			if (first < c) {
+				low = mid + 1;
+			} else if (first > c) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * Keeps the k best ranked sites offered to it, in a min-heap of primitive
+ * arrays whose root is the worst site kept. A site is better than another if
+ * its rank is higher, or if the ranks are equal and its document id is lower.
+ * Offering a site costs O(log k), and nothing is allocated per site.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class TopDocs {
+
+	private final int capacity;
+	private int[] docs;
+	private float[] ranks;
+	private int size = 0;
+
+	/**
+	 * Makes an empty collector.
+	 * 
+	 * @param capacity
+	 *            number of sites to keep, at least 1
+	 */
+	public TopDocs(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.capacity = capacity;
+
+		// grow on demand, most queries match fewer sites than asked for
+		int initial = Math.min(capacity, 64);
+		docs = new int[initial];
+		ranks = new float[initial];
+	}
+
+	/**
+	 * Gets the number of sites kept.
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the rank a site must exceed to be kept, assuming it has a higher
+	 * document id than every site offered so far.
+	 * 
+	 * @return the worst kept rank once full, 0 before then
+	 */
+	public float getThreshold() {
+		return size == capacity ? ranks[0] : 0;
+	}
+
+	/**
+	 * Offers a site, keeping it if it is among the best k so far.
+	 * 
+	 * @param doc
+	 * @param rank
+	 */
+	public void offer(int doc, float rank) {
+		if (size < capacity) {
+			if (size == docs.length) {
+				int length = Math.min(capacity, size * 2);
+				docs = Arrays.copyOf(docs, length);
+				ranks = Arrays.copyOf(ranks, length);
+			}
+			docs[size] = doc;
+			ranks[size] = rank;
+			siftUp(size++);
+		} else if (isBetter(doc, rank, docs[0], ranks[0])) {
+			docs[0] = doc;
+			ranks[0] = rank;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Offers every site kept by another collector, as when merging the top
+	 * sites of several shards.
+	 * 
+	 * @param other
+	 */
+	public void offerAll(TopDocs other) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.docs[i], other.ranks[i]);
+		}
+	}
+
+	/**
+	 * Gets the kept sites, best first. Empties the collector.
+	 * 
+	 * @return sites and their ranks
+	 */
+	public ScoredDocs toResults() {
+		int[] sortedDocs = new int[size];
+		float[] sortedRanks = new float[size];
+
+		// removing the worst site each time fills the arrays from the back
+		while (size > 0) {
+			sortedDocs[size - 1] = docs[0];
+			sortedRanks[size - 1] = ranks[0];
+			size--;
+			docs[0] = docs[size];
+			ranks[0] = ranks[size];
+			siftDown(0);
+		}
+		return new ScoredDocs(sortedDocs, sortedRanks);
+	}
+
+	/**
+	 * Checks whether one site is better than another.
+	 * 
+	 * @param doc
+	 * @param rank
+	 * @param otherDoc
+	 * @param otherRank
+	 * @return true if the first site ranks higher
+	 */
+	private static boolean isBetter(int doc, float rank, int otherDoc,
+			float otherRank) {
+		return rank > otherRank || (rank == otherRank && doc < otherDoc);
+	}
+
+	/**
+	 * Moves the site at i up until its parent is worse than it.
+	 * 
+	 * @param i
+	 */
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!isBetter(docs[parent], ranks[parent], docs[i], ranks[i])) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Moves the site at i down until both of its children are better than it.
+	 * 
+	 * @param i
+	 */
+	private void siftDown(int i) {
+		while (true) {
+			int worst = i;
+			int last = Math.min(2 * i + 2, size - 1);
+			for (int child = 2 * i + 1; child <= last; child++) {
+				if (isBetter(docs[worst], ranks[worst], docs[child],
+						ranks[child])) {
+					worst = child;
+				}
+			}
+			if (worst == i) {
+				return;
+			}
+			swap(i, worst);
+			i = worst;
+		}
+	}
+
+	/**
+	 * Swaps two sites in the heap.
+	 * 
+	 * @param i
+	 * @param j
+	 */
+	private void swap(int i, int j) {
+		int doc = docs[i];
+		docs[i] = docs[j];
+		docs[j] = doc;
+		float rank = ranks[i];
+		ranks[i] = ranks[j];
+		ranks[j] = rank;
+	}
+
+}
@@ -0,0 +1,86 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-byte encoding for non-negative integers. Each byte holds seven bits
+ * of the value, and the high bit is set on every byte except the last, so small
+ * numbers (like the gaps between sorted positions) take a single byte.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class VByte {
+
+	private VByte() {
+	}
+
+	/**
+	 * Gets the number of bytes needed to encode a value.
+	 * 
+	 * @param value
+	 * @return number of bytes
+	 */
+	public static int length(int value) {
+		int length = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes a value into the buffer at offset. The buffer must have room for
+	 * {@link #length(int)} bytes.
+	 * 
+	 * @param value
+	 * @param buffer
+	 * @param offset
+	 * @return offset just past the encoded value
+	 */
+	public static int write(int value, byte[] buffer, int offset) {
+		while ((value & ~0x7F) != 0) {
+			buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Writes a value to the end of a byte stream.
+	 * 
+	 * @param value
+	 * @param out
+	 */
+	public static void write(int value, ByteArrayOutputStream out) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Reads a value from the buffer at offset[0], advancing offset[0] past it.
+	 * Uses absolute reads, so the buffer's own position is never changed and
+	 * it can be shared between threads.
+	 * 
+	 * @param buffer
+	 * @param offset
+	 *            one element array holding the read offset
+	 * @return decoded value
+	 */
+	public static int read(ByteBuffer buffer, int[] offset) {
+		int pos = offset[0];
+		int b = buffer.get(pos++);
+		int value = b & 0x7F;
+		for (int shift = 7; b < 0; shift += 7) {
+			b = buffer.get(pos++);
+			value |= (b & 0x7F) << shift;
+		}
+		offset[0] = pos;
+		return value;
+	}
+
+}
@@ -20,6 +20,7 @@ public class WebCrawler implements Runnable {
 	private String url;
 	private WorkQueue workers;
 	private static AtomicInteger pageCount = new AtomicInteger(); // default constructor sets it to 0
+	private static AtomicInteger pending = new AtomicInteger(); // sites queued or being crawled
 	private static Lock lock = new Lock();;
 	private static ArrayList<String> visitedSites = new ArrayList<String>(); // shared
 	private static final int MAXSITES = 30;
@@ -36,9 +37,29 @@ public class WebCrawler implements Runnable {
 	}
 
 	/**
-	 * Fetches and parses the html, adding words to the inverted index.
+	 * Crawls the site. When the last queued site has been crawled, the sites
+	 * are ranked by the links found between them.
 	 */
 	public void run() {
+		try {
+			crawl();
+		} finally {
+			if (pending.decrementAndGet() == 0) {
+				log.info("Crawl finished; ranking pages.");
+				try {
+					InvertedIndex.getInstance().rankPages(
+							LinkGraph.getInstance());
+				} catch (RuntimeException e) {
+					log.error("Unable to rank pages.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fetches and parses the html, adding words to the inverted index.
+	 */
+	private void crawl() {
 		
 		InvertedIndex index = InvertedIndex.getInstance();
 		
@@ -71,6 +92,13 @@ public class WebCrawler implements Runnable {
 		
 		ArrayList<String> links = HTMLParser.grabLinks(html, url);
  		Set<String> uniqueLinks = new HashSet<String>(links);
+
+		// keep the link graph for ranking, in the form urls are indexed in
+		Set<String> targets = new HashSet<String>();
+		for (String link : uniqueLinks) {
+			targets.add(HTMLParser.addSlashIfNeeded(link));
+		}
+		LinkGraph.getInstance().addLinks(url, targets);
 		
 		lock.acquireWriteLock();
 		
@@ -83,6 +111,7 @@ public class WebCrawler implements Runnable {
 				
 				visitedSites.add(link);
 				
+				pending.incrementAndGet();
 				workers.execute(new WebCrawler(link));
 			}
 		}
@@ -110,8 +139,8 @@ public class WebCrawler implements Runnable {
 		
 		Scanner scan = new Scanner(words);
 
-		// word number in the file
-		int count = 0;
+		// words of the page in order; a word's number is its position
+		ArrayList<String> pageWords = new ArrayList<String>();
 
 		String w;
 		while (scan.hasNext()) {
@@ -119,15 +148,16 @@ public class WebCrawler implements Runnable {
 			w = scan.next().toLowerCase().trim();
 			// remove all non-alphanumeric characters
 			String word = w.replaceAll("[^a-zA-Z0-9]", "");
-			log.debug("Current word: " + word);
 			// insert only non-empty strings
 			if (!word.isEmpty()) {
-				index.insert(word, url, count);
-				log.debug("Number in file: " + count);
-				count++;
+				pageWords.add(word);
 			}
 		}
 
+		// publish the whole page to the index at once
+		index.indexDocument(url, pageWords);
+		log.debug("Indexed " + pageWords.size() + " words of " + url);
+
 	}
 	
 	/**
@@ -137,6 +167,7 @@ public class WebCrawler implements Runnable {
 	 */
 	public static void addSeed(String url) {
 		pageCount.incrementAndGet();
+		pending.incrementAndGet();
 		visitedSites.add(url);
 		log.debug("#" + pageCount + " " + url + " (seed)");
 	}
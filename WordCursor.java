@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * Walks the sites of one segment that contain a query word, in document order.
+ * For a partial word the cursor covers every word starting with it, and a site
+ * is visited once however many of those words it contains. Cursors move
+ * forward with {@link #advance(int)}, which uses the skip pointers of the
+ * underlying posting lists, so several cursors can be intersected by
+ * leapfrogging. A prefix matching many words is walked through its cached
+ * {@link PrefixPostings} instead of word by word.
+ * 
+ * @author Steely Morneau
+ * 
+ */
+public class WordCursor {
+
+	// posting lists still being walked; null once exhausted
+	private PostingIterator[] postings;
+	private int documentFrequency = 0;
+	private int maxFrequency = 0;
+	private int doc = -1;
+
+	// merged postings of a prefix, walked instead of postings when not null
+	private PrefixPostings merged = null;
+	private int index = 0;
+
+	/**
+	 * Makes a cursor over the sites of a segment that contain word.
+	 * 
+	 * @param segment
+	 * @param word
+	 * @param partial
+	 *            if true, also covers every word that starts with word
+	 * @param deadline
+	 *            bounds the merging of a prefix's postings; a cursor whose
+	 *            prefix could not be merged in time covers no sites
+	 */
+	public WordCursor(IndexSegment segment, String word, boolean partial,
+			Deadline deadline) {
+		int start;
+		int end;
+		if (partial) {
+			merged = segment.getPrefixPostings(word, deadline);
+			if (merged != null) {
+				postings = new PostingIterator[0];
+				documentFrequency = merged.size();
+				maxFrequency = merged.getMaxFrequency();
+				return;
+			}
+			if (deadline.isExpired()) {
+				// the search is being cut short anyway
+				postings = new PostingIterator[0];
+				return;
+			}
+			start = segment.prefixStart(word);
+			end = segment.prefixEnd(word);
+		} else {
+			start = segment.find(word);
+			end = start < 0 ? start : start + 1;
+		}
+
+		postings = new PostingIterator[Math.max(0, end - start)];
+		for (int i = 0; i < postings.length; i++) {
+			postings[i] = segment.postings(start + i);
+			documentFrequency += segment.getDocumentFrequency(start + i);
+			maxFrequency += segment.getMaxFrequency(start + i);
+		}
+	}
+
+	/**
+	 * Gets the number of entries in the posting lists of the cursor, an upper
+	 * bound on the number of sites it visits.
+	 * 
+	 * @return document frequency
+	 */
+	public int getDocumentFrequency() {
+		return documentFrequency;
+	}
+
+	/**
+	 * Gets an upper bound on {@link #frequency()} in any site of the segment.
+	 * 
+	 * @return maximum frequency
+	 */
+	public int getMaxFrequency() {
+		return maxFrequency;
+	}
+
+	/**
+	 * Moves to the first site at or after target.
+	 * 
+	 * @param target
+	 *            document id
+	 * @return false if no site at or after target contains the word
+	 */
+	public boolean advance(int target) {
+		if (merged != null) {
+			index = merged.advance(index, target);
+			if (index == merged.size()) {
+				doc = Integer.MAX_VALUE;
+				return false;
+			}
+			doc = merged.getDocument(index);
+			return true;
+		}
+
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < postings.length; i++) {
+			if (postings[i] != null) {
+				if (postings[i].advance(target)) {
+					min = Math.min(min, postings[i].doc());
+				} else {
+					postings[i] = null;
+				}
+			}
+		}
+		doc = min;
+		return min != Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Gets the document id of the current site.
+	 * 
+	 * @return document id
+	 */
+	public int doc() {
+		return doc;
+	}
+
+	/**
+	 * Gets the number of occurrences of the word in the current site.
+	 * 
+	 * @return frequency
+	 */
+	public int frequency() {
+		if (merged != null) {
+			return merged.getFrequency(index);
+		}
+
+		int frequency = 0;
+		for (PostingIterator list : postings) {
+			if (list != null && list.doc() == doc) {
+				frequency += list.frequency();
+			}
+		}
+		return frequency;
+	}
+
+	/**
+	 * Checks whether {@link #positions()} can be used, which it can unless the
+	 * cursor walks merged prefix postings.
+	 * 
+	 * @return true if positions are available
+	 */
+	public boolean hasPositions() {
+		return merged == null;
+	}
+
+	/**
+	 * Gets the positions of the word in the current site. Merged prefix
+	 * postings do not keep positions, but phrases only use exact words.
+	 * 
+	 * @return sorted positions
+	 * @throws IllegalStateException
+	 *             if the cursor walks merged prefix postings
+	 */
+	public int[] positions() {
+		if (merged != null) {
+			throw new IllegalStateException(
+					"Merged prefix postings have no positions.");
+		}
+
+		int[] positions = new int[frequency()];
+		int n = 0;
+		int lists = 0;
+		for (PostingIterator list : postings) {
+			if (list != null && list.doc() == doc) {
+				PositionIterator it = list.positions();
+				while (it.hasNext()) {
+					positions[n++] = it.next();
+				}
+				lists++;
+			}
+		}
+
+		// positions of different words of a partial cursor interleave
+		if (lists > 1) {
+			Arrays.sort(positions);
+		}
+		return positions;
+	}
+
+}